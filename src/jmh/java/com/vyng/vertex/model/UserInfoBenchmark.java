@@ -0,0 +1,54 @@
+package com.vyng.vertex.model;
+
+import com.vyng.vertex.utils.UserInfoWriter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mongo document to response body: the former flatten in place + encodePrettily path vs direct buffer writing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserInfoBenchmark {
+
+    private static final String ID = "5d6e7f8a9b0c1d2e3f4a5b6c";
+
+    private final JsonObject document = new JsonObject()
+            .put("_id", new JsonObject().put("$oid", ID))
+            .put("phoneNumber", "+15551234567")
+            .put("createdAt", new JsonObject().put("$date", "2019-08-26T18:40:55.000Z"));
+
+    @Benchmark
+    public UserInfo fromDocument() {
+        return UserInfo.fromDocument(ID, document);
+    }
+
+    @Benchmark
+    public Buffer flattenAndEncodePrettily() {
+        // The document is modified in place, so it has to be copied as Mongo gives a new one every time
+        JsonObject entry = document.copy();
+        entry.put("_id", entry.getJsonObject("_id").getString("$oid"));
+        entry.put("createdAt", entry.getJsonObject("createdAt").getString("$date"));
+        return Buffer.buffer(Json.encodePrettily(entry));
+    }
+
+    @Benchmark
+    public Buffer writeCompact() {
+        return UserInfoWriter.write(UserInfo.fromDocument(ID, document), false);
+    }
+
+    @Benchmark
+    public Buffer writePretty() {
+        return UserInfoWriter.write(UserInfo.fromDocument(ID, document), true);
+    }
+}
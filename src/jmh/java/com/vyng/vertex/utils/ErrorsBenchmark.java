@@ -0,0 +1,63 @@
+package com.vyng.vertex.utils;
+
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building an error response. The routing context is a stub that only records the written body.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ErrorsBenchmark {
+
+    private Object body;
+    private final RoutingContext context = stubContext();
+
+    @Benchmark
+    public void error(Blackhole blackhole) {
+        Errors.error(context, 404, "Object with the id was not found: 5d6e7f8a9b0c1d2e3f4a5b6c");
+        blackhole.consume(body);
+    }
+
+    private RoutingContext stubContext() {
+        HttpServerRequest request = (HttpServerRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServerRequest.class}, (proxy, method, args) -> {
+                    if ("path".equals(method.getName())) {
+                        return "/users/5d6e7f8a9b0c1d2e3f4a5b6c/info";
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        HttpServerResponse response = (HttpServerResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServerResponse.class}, (proxy, method, args) -> {
+                    if ("end".equals(method.getName())) {
+                        body = args[0];
+                        return null;
+                    }
+                    // putHeader, setStatusCode and other fluent setters
+                    return proxy;
+                });
+        return (RoutingContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RoutingContext.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "request":
+                            return request;
+                        case "response":
+                            return response;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,41 @@
+package com.vyng.vertex.utils;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of a user info response: pretty printed as it is sent now vs compact.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonEncodingBenchmark {
+
+    private final JsonObject user = new JsonObject()
+            .put("_id", "5d6e7f8a9b0c1d2e3f4a5b6c")
+            .put("phoneNumber", "+15551234567")
+            .put("createdAt", "2019-08-26T18:40:55.000Z");
+
+    @Benchmark
+    public String encodePrettily() {
+        return Json.encodePrettily(user);
+    }
+
+    @Benchmark
+    public String encodeCompact() {
+        return user.encode();
+    }
+
+    @Benchmark
+    public Object encodeCompactToBuffer() {
+        return user.toBuffer();
+    }
+}
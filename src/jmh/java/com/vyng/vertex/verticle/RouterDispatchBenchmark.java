@@ -0,0 +1,136 @@
+package com.vyng.vertex.verticle;
+
+import com.vyng.vertex.loadtest.InMemoryMongo;
+import com.vyng.vertex.loadtest.StandInBackends;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full request through the router: session, checkAuth, rate limits, cache or Mongo, encoding.
+ * The server runs over localhost with in-memory Mongo and Redis, so the result includes the loopback HTTP cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouterDispatchBenchmark {
+
+    private static final String ID = InMemoryMongo.userId(0);
+    private static final String USER = "bench";
+
+    // 0 disables the user info cache, so every request goes to the (in-memory) database
+    @Param({"300", "0"})
+    public String cacheTtlSeconds;
+
+    private Vertx vertx;
+    private HttpClient client;
+    private File userConfig;
+    private int port;
+    private String sessionCookie;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        userConfig = File.createTempFile("bench-users", ".properties");
+        Files.write(userConfig.toPath(),
+                ("user." + USER + " = " + USER + ",reader\nrole.reader = get_info\n").getBytes(StandardCharsets.UTF_8));
+        port = freePort();
+
+        JsonObject config = new JsonObject()
+                .put("PORT", String.valueOf(port))
+                .put("ENV", "bench")
+                .put("USER_CONFIG_PATH", userConfig.getAbsolutePath())
+                .put("MAX_USER_REQUESTS", String.valueOf(Integer.MAX_VALUE))
+                .put("MAX_TOTAL_REQUESTS", String.valueOf(Integer.MAX_VALUE))
+                .put("SESSION_STORE", "local")
+                .put("USER_CACHE_TTL_SECONDS", cacheTtlSeconds);
+
+        vertx = Vertx.vertx();
+        CompletableFuture<String> deployed = new CompletableFuture<>();
+        HttpServerVerticle verticle = new HttpServerVerticle(StandInBackends.immediate(InMemoryMongo.generateUsers(1)));
+        vertx.deployVerticle(verticle, new DeploymentOptions().setConfig(config), ar -> {
+            if (ar.succeeded()) {
+                deployed.complete(ar.result());
+            } else {
+                deployed.completeExceptionally(ar.cause());
+            }
+        });
+        deployed.get(30, TimeUnit.SECONDS);
+
+        client = vertx.createHttpClient(new HttpClientOptions()
+                .setDefaultHost("localhost")
+                .setDefaultPort(port)
+                .setKeepAlive(true));
+        sessionCookie = login();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(ar -> closed.complete(null));
+        closed.get(30, TimeUnit.SECONDS);
+        Files.deleteIfExists(userConfig.toPath());
+    }
+
+    @Benchmark
+    public Buffer getUserInfo() throws Exception {
+        CompletableFuture<Buffer> body = new CompletableFuture<>();
+        client.request(HttpMethod.GET, "/users/" + ID + "/info")
+                .putHeader("Cookie", sessionCookie)
+                .handler(response -> {
+                    if (response.statusCode() != 200) {
+                        body.completeExceptionally(new IllegalStateException("Unexpected status: " + response.statusCode()));
+                        return;
+                    }
+                    response.bodyHandler(body::complete);
+                })
+                .exceptionHandler(body::completeExceptionally)
+                .end();
+        return body.get(10, TimeUnit.SECONDS);
+    }
+
+    private String login() throws Exception {
+        CompletableFuture<String> cookie = new CompletableFuture<>();
+        client.request(HttpMethod.POST, "/loginhandler")
+                .putHeader("Content-Type", "application/x-www-form-urlencoded")
+                .handler(response -> {
+                    for (String setCookie : response.cookies()) {
+                        if (setCookie.startsWith("vertx-web.session=")) {
+                            cookie.complete(setCookie.split(";", 2)[0]);
+                            return;
+                        }
+                    }
+                    cookie.completeExceptionally(new IllegalStateException("No session cookie, status: " + response.statusCode()));
+                })
+                .exceptionHandler(cookie::completeExceptionally)
+                .end("username=" + USER + "&password=" + USER);
+        return cookie.get(10, TimeUnit.SECONDS);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.vyng.vertex.verticle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SanitizeParamBenchmark {
+
+    // Usual id, a phone and a param that needs to be sanitized
+    @Param({"5d6e7f8a9b0c1d2e3f4a5b6c", "+15551234567", "5d6e7f8a9b0c\n1d2e3f4a5b6c\t"})
+    public String param;
+
+    @Benchmark
+    public String sanitizeParam() {
+        return HttpServerVerticle.sanitizeParam(param);
+    }
+}
@@ -0,0 +1,141 @@
+package com.vyng.vertex.loadtest;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Users collection held in memory, served through {@link MongoClient} stand-ins.
+ * <p>
+ * Only the calls the services make are supported: user lookups by id and by $in, the whitelist lookups
+ * (the phones of all the users are whitelisted, any other phone found by findOne too), ping and audit log writes,
+ * which are accepted and dropped.
+ */
+public class InMemoryMongo {
+
+    private static final String USERS_COLLECTION = "users";
+    private static final String WHITELIST_COLLECTION = "phones_to_delete";
+
+    private final Map<String, JsonObject> users;
+    private final StandInBehavior behavior;
+
+    public InMemoryMongo(Map<String, JsonObject> users, StandInBehavior behavior) {
+        this.users = users;
+        this.behavior = behavior;
+    }
+
+    /**
+     * Generates users with the ids {@link #userId(int)} of 0 until count
+     */
+    public static Map<String, JsonObject> generateUsers(int count) {
+        Map<String, JsonObject> users = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String id = userId(i);
+            users.put(id, new JsonObject()
+                    .put("_id", new JsonObject().put("$oid", id))
+                    .put("phoneNumber", phoneNumber(i))
+                    .put("createdAt", new JsonObject().put("$date", "2019-08-26T18:40:55.000Z")));
+        }
+        return users;
+    }
+
+    public static String userId(int index) {
+        return String.format("%024x", index + 1);
+    }
+
+    public static String phoneNumber(int index) {
+        return String.format("+1555%07d", index);
+    }
+
+    @SuppressWarnings("unchecked")
+    public MongoClient client(Vertx vertx) {
+        return (MongoClient) Proxy.newProxyInstance(InMemoryMongo.class.getClassLoader(),
+                new Class<?>[]{MongoClient.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findOne": {
+                            JsonObject query = (JsonObject) args[1];
+                            behavior.answer(vertx, (Handler<AsyncResult<JsonObject>>) args[3], () -> findOne((String) args[0], query));
+                            return proxy;
+                        }
+                        case "findWithOptions": {
+                            JsonObject query = (JsonObject) args[1];
+                            behavior.answer(vertx, (Handler<AsyncResult<List<JsonObject>>>) args[3],
+                                    () -> find((String) args[0], query));
+                            return proxy;
+                        }
+                        case "bulkWriteWithOptions": {
+                            int count = ((List<?>) args[1]).size();
+                            behavior.answer(vertx, (Handler<AsyncResult<MongoClientBulkWriteResult>>) args[3],
+                                    () -> new MongoClientBulkWriteResult(count, 0, 0, 0, List.of()));
+                            return proxy;
+                        }
+                        case "runCommand":
+                            behavior.answer(vertx, (Handler<AsyncResult<JsonObject>>) args[2], () -> new JsonObject().put("ok", 1.0));
+                            return proxy;
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private JsonObject findOne(String collection, JsonObject query) {
+        if (!USERS_COLLECTION.equals(collection)) {
+            // Whitelist of phones allowed to be removed
+            return query.copy();
+        }
+        JsonObject user = users.get(query.getJsonObject("_id").getString("$oid"));
+        return user == null ? null : user.copy();
+    }
+
+    private List<JsonObject> find(String collection, JsonObject query) {
+        if (USERS_COLLECTION.equals(collection)) {
+            return findIn(query);
+        }
+        if (WHITELIST_COLLECTION.equals(collection)) {
+            return whitelist(query);
+        }
+        return List.of();
+    }
+
+    /**
+     * Whitelist entries share the ids of the users, sorted by id and after the one in {"_id": {"$gt": ...}} if given
+     */
+    private List<JsonObject> whitelist(JsonObject query) {
+        JsonObject idQuery = query.getJsonObject("_id");
+        String after = idQuery == null ? "" : idQuery.getJsonObject("$gt").getString("$oid");
+        List<JsonObject> entries = new ArrayList<>();
+        for (JsonObject user : users.values()) {
+            JsonObject id = user.getJsonObject("_id");
+            if (id.getString("$oid").compareTo(after) > 0) {
+                entries.add(new JsonObject().put("_id", id.copy()).put("phone", user.getString("phoneNumber")));
+            }
+        }
+        entries.sort(Comparator.comparing(entry -> entry.getJsonObject("_id").getString("$oid")));
+        return entries;
+    }
+
+    private List<JsonObject> findIn(JsonObject query) {
+        JsonArray ids = query.getJsonObject("_id").getJsonArray("$in");
+        List<JsonObject> found = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            JsonObject user = users.get(ids.getJsonObject(i).getString("$oid"));
+            if (user != null) {
+                found.add(user.copy());
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,116 @@
+package com.vyng.vertex.loadtest;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.redis.RedisClient;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One Redis shared by all the {@link RedisClient} stand-ins it creates, like a real server shared by the verticles.
+ * <p>
+ * Plain and binary values are kept without expiration. Of the scripts, only the rate limit one (INCR) is
+ * executed, the others succeed without doing anything. Scripts have to be sent with EVAL before EVALSHA knows them.
+ */
+public class InMemoryRedis {
+
+    private static final long COUNTER_TTL_SECONDS = 3600;
+
+    private final StandInBehavior behavior;
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+    private final Map<String, Long> counters = new ConcurrentHashMap<>();
+    private final Map<String, String> scripts = new ConcurrentHashMap<>();
+
+    public InMemoryRedis(StandInBehavior behavior) {
+        this.behavior = behavior;
+    }
+
+    @SuppressWarnings("unchecked")
+    public RedisClient client(Vertx vertx) {
+        return (RedisClient) Proxy.newProxyInstance(InMemoryRedis.class.getClassLoader(),
+                new Class<?>[]{RedisClient.class}, (proxy, method, args) -> {
+                    Object last = args == null || args.length == 0 ? null : args[args.length - 1];
+                    Handler<AsyncResult<Object>> handler = last instanceof Handler ? (Handler<AsyncResult<Object>>) last : null;
+                    switch (method.getName()) {
+                        case "evalsha": {
+                            String script = scripts.get((String) args[0]);
+                            if (script == null) {
+                                handler.handle(Future.failedFuture("NOSCRIPT No matching script. Please use EVAL."));
+                            } else {
+                                behavior.answer(vertx, handler, () -> run(script, (List<String>) args[1]));
+                            }
+                            break;
+                        }
+                        case "eval": {
+                            String script = (String) args[0];
+                            scripts.put(sha1Hex(script), script);
+                            behavior.answer(vertx, handler, () -> run(script, (List<String>) args[1]));
+                            break;
+                        }
+                        case "get":
+                        case "getBinary":
+                            behavior.answer(vertx, handler, () -> values.get((String) args[0]));
+                            break;
+                        case "setex":
+                            values.put((String) args[0], args[2]);
+                            behavior.answer(vertx, handler, () -> "OK");
+                            break;
+                        case "setBinaryWithOptions":
+                            values.put((String) args[0], ((Buffer) args[1]).copy());
+                            behavior.answer(vertx, handler, () -> null);
+                            break;
+                        case "del":
+                            values.remove((String) args[0]);
+                            behavior.answer(vertx, handler, () -> 1L);
+                            break;
+                        case "delMany":
+                            ((List<String>) args[0]).forEach(values::remove);
+                            behavior.answer(vertx, handler, () -> 1L);
+                            break;
+                        case "keys":
+                            behavior.answer(vertx, handler, JsonArray::new);
+                            break;
+                        case "ping":
+                            behavior.answer(vertx, handler, () -> "PONG");
+                            break;
+                        default:
+                            behavior.answer(vertx, handler, () -> null);
+                    }
+                    return method.getReturnType().isInstance(proxy) ? proxy : null;
+                });
+    }
+
+    private JsonArray run(String script, List<String> keys) {
+        JsonArray result = new JsonArray();
+        if (!script.contains("'INCR'")) {
+            return result;
+        }
+        for (String key : keys) {
+            result.add(counters.merge(key, 1L, Long::sum)).add(COUNTER_TTL_SECONDS);
+        }
+        return result;
+    }
+
+    private static String sha1Hex(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
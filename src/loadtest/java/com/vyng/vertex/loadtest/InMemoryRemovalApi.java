@@ -0,0 +1,39 @@
+package com.vyng.vertex.loadtest;
+
+import com.vyng.vertex.error.RemoteApiException;
+import com.vyng.vertex.service.UserRemovalApi;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+/**
+ * Removal API stand-in: every removal succeeds after the latency of the behavior, injected failures
+ * come back as 503 responses.
+ */
+public class InMemoryRemovalApi implements UserRemovalApi {
+
+    private final Vertx vertx;
+    private final StandInBehavior behavior;
+
+    public InMemoryRemovalApi(Vertx vertx, StandInBehavior behavior) {
+        this.vertx = vertx;
+        this.behavior = behavior;
+    }
+
+    @Override
+    public Future<Void> remove(String phone, String server) {
+        Promise<Void> result = Promise.promise();
+        behavior.<Void>answer(vertx, ar -> {
+            if (ar.succeeded()) {
+                result.complete();
+            } else {
+                result.fail(new RemoteApiException(503, "Failed to delete the user: " + phone));
+            }
+        }, () -> null);
+        return result.future();
+    }
+
+    @Override
+    public void close() {
+    }
+}
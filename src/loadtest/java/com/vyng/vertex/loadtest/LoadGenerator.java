@@ -0,0 +1,202 @@
+package com.vyng.vertex.loadtest;
+
+import com.vyng.vertex.metrics.LatencyHistogram;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Open-model load generator: sends requests at a fixed rate, whether or not the previous ones have completed.
+ * <p>
+ * Every request has an intended start time on the schedule. The latency is measured from it, not from the moment
+ * the request was actually sent, so stalls of the server or of the client are not hidden (coordinated omission
+ * correction). The uncorrected service time is recorded too, for comparison.
+ * A request without a response within the request timeout counts as an error, so a lost response can't stall a run.
+ */
+public class LoadGenerator {
+
+    private static final long TICK_MS = 1;
+
+    private final Vertx vertx;
+    private final HttpClient client;
+    private final Function<Long, Request> requests;
+    private final long requestTimeoutMs;
+    private final Map<String, Stats> stats = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param requests gives the request to send for the sequence number
+     */
+    public LoadGenerator(Vertx vertx, HttpClient client, long requestTimeoutMs, Function<Long, Request> requests) {
+        this.vertx = vertx;
+        this.client = client;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.requests = requests;
+    }
+
+    /**
+     * Sends requestsPerSecond requests for the duration, completes when all the responses arrived.
+     * The stats are per run.
+     */
+    public Future<Map<String, Stats>> run(int requestsPerSecond, long durationMs) {
+        stats.clear();
+        Promise<Map<String, Stats>> done = Promise.promise();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        long total = requestsPerSecond * durationMs / 1000;
+        if (total == 0) {
+            done.complete(stats);
+            return done.future();
+        }
+        long startNanos = System.nanoTime();
+        long[] sent = {0};
+        AtomicLong completed = new AtomicLong();
+
+        // Timers are not precise, every tick catches up with the schedule by sending what is due
+        vertx.setPeriodic(TICK_MS, timerId -> {
+            long now = System.nanoTime();
+            while (sent[0] < total && startNanos + sent[0] * intervalNanos <= now) {
+                long intended = startNanos + sent[0] * intervalNanos;
+                send(requests.apply(sent[0]), intended, () -> {
+                    if (completed.incrementAndGet() == total) {
+                        done.complete(stats);
+                    }
+                });
+                sent[0]++;
+            }
+            if (sent[0] >= total) {
+                vertx.cancelTimer(timerId);
+            }
+        });
+        return done.future();
+    }
+
+    /**
+     * onDone runs once per request, the request and the response may both fail it
+     */
+    private void send(Request request, long intendedNanos, Runnable onDone) {
+        Stats endpointStats = stats.computeIfAbsent(request.name, Stats::new);
+        long sentNanos = System.nanoTime();
+        AtomicBoolean finished = new AtomicBoolean();
+        HttpClientRequest httpRequest = client.request(request.method, request.uri, response -> {
+            response.exceptionHandler(cause -> {
+                if (finished.compareAndSet(false, true)) {
+                    endpointStats.recordError(cause);
+                    onDone.run();
+                }
+            });
+            response.endHandler(__ -> {
+                if (finished.compareAndSet(false, true)) {
+                    endpointStats.record(response.statusCode(), intendedNanos, sentNanos);
+                    onDone.run();
+                }
+            });
+        });
+        request.headers.forEach(httpRequest::putHeader);
+        httpRequest.setTimeout(requestTimeoutMs);
+        httpRequest.exceptionHandler(cause -> {
+            if (finished.compareAndSet(false, true)) {
+                endpointStats.recordError(cause);
+                onDone.run();
+            }
+        });
+        httpRequest.end();
+    }
+
+    public static class Request {
+
+        private final String name;
+        private final HttpMethod method;
+        private final String uri;
+        private final Map<String, String> headers;
+
+        public Request(String name, HttpMethod method, String uri, Map<String, String> headers) {
+            this.name = name;
+            this.method = method;
+            this.uri = uri;
+            this.headers = headers;
+        }
+    }
+
+    /**
+     * Results of one endpoint. Responses may arrive on any event loop, so updates are thread-safe
+     */
+    public static class Stats {
+
+        private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 0.9999};
+
+        private final String name;
+        private final LatencyHistogram latency;
+        private final LatencyHistogram serviceTime;
+        private final Map<Integer, Long> statusCounts = new ConcurrentSkipListMap<>();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+
+        private Stats(String name) {
+            this.name = name;
+            this.latency = new LatencyHistogram("latency", name);
+            this.serviceTime = new LatencyHistogram("service_time", name);
+        }
+
+        private void record(int status, long intendedNanos, long sentNanos) {
+            long now = System.nanoTime();
+            latency.record(now - intendedNanos);
+            serviceTime.record(now - sentNanos);
+            statusCounts.merge(status, 1L, Long::sum);
+        }
+
+        private void recordError(Throwable cause) {
+            if (cause instanceof TimeoutException) {
+                timeouts.incrementAndGet();
+            } else {
+                errors.incrementAndGet();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        public double latencyMillis(double quantile) {
+            return latency.quantileMicros(quantile) / 1000.0;
+        }
+
+        public String report(long durationMs) {
+            StringBuilder out = new StringBuilder();
+            long count = latency.getCount();
+            out.append(name).append(": ").append(count).append(" responses, ")
+                    .append(String.format("%.1f", count * 1000.0 / durationMs)).append(" req/s, statuses ")
+                    .append(statusCounts).append(", connection errors ").append(errors.get())
+                    .append(", timeouts ").append(timeouts.get()).append('\n');
+            appendQuantiles(out, "  latency (corrected)", latency);
+            appendQuantiles(out, "  service time       ", serviceTime);
+            return out.toString();
+        }
+
+        private static void appendQuantiles(StringBuilder out, String title, LatencyHistogram histogram) {
+            out.append(title).append(':');
+            for (double quantile : QUANTILES) {
+                out.append(String.format(" p%s=%.2fms", quantileName(quantile), histogram.quantileMicros(quantile) / 1000.0));
+            }
+            out.append('\n');
+        }
+
+        private static String quantileName(double quantile) {
+            String name = String.valueOf(quantile * 100);
+            return name.endsWith(".0") ? name.substring(0, name.length() - 2) : name;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.vyng.vertex.loadtest;
+
+import com.vyng.vertex.verticle.MainVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the whole server in this process against in-memory backends and drives it with {@link LoadGenerator}:
+ * GET /users/:id/info and DELETE /users/phone/:phone at a fixed rate. Works offline.
+ * <p>
+ * ./gradlew loadTest -Dloadtest.rate=2000 -Dloadtest.durationSeconds=60 -Dloadtest.mongoLatencyMs=2
+ * <p>
+ * Comparison of the HTTP server profiles, one after another in the same process:
+ * ./gradlew loadTest -Dloadtest.httpProfiles=baseline,tuned -Dloadtest.rate=5000 [-Dloadtest.http2=true]
+ * baseline runs with the server options from before the profiles, network activity logging included.
+ * No reference numbers are kept in the repo yet, they depend on the machine: compare the two summary lines of one run.
+ * <p>
+ * Settings (system properties, with defaults): rate 1000, durationSeconds 30, warmupSeconds 10,
+ * instances (number of cores), users 100000, deleteShare 0.05, connections 64, requestTimeoutMs 10000,
+ * httpProfiles tuned, http2 false,
+ * serviceTransport eventbus (or direct, lookups and removals in the HTTP verticles),
+ * mongoLatencyMs 1, mongoJitterMs 2, mongoFailureRate 0, redisLatencyMs 0, redisJitterMs 1, redisFailureRate 0,
+ * removalLatencyMs 20, removalJitterMs 20, removalFailureRate 0.
+ */
+public class LoadTest {
+
+    private static final String USER = "loadtest";
+
+    public static void main(String[] args) throws Exception {
+        int rate = Integer.getInteger("loadtest.rate", 1000);
+        long durationMs = TimeUnit.SECONDS.toMillis(Long.getLong("loadtest.durationSeconds", 30));
+        long warmupMs = TimeUnit.SECONDS.toMillis(Long.getLong("loadtest.warmupSeconds", 10));
+        int userCount = Integer.getInteger("loadtest.users", 100_000);
+        double deleteShare = Double.parseDouble(System.getProperty("loadtest.deleteShare", "0.05"));
+        long requestTimeoutMs = Long.getLong("loadtest.requestTimeoutMs", 10_000);
+        boolean http2 = Boolean.getBoolean("loadtest.http2");
+        String[] profiles = System.getProperty("loadtest.httpProfiles", "tuned").split(",");
+
+        StandInBehavior mongo = behavior("mongo", 1, 2);
+        StandInBehavior redis = behavior("redis", 0, 1);
+        StandInBehavior removal = behavior("removal", 20, 20);
+        System.out.println("Mongo: " + mongo + "; Redis: " + redis + "; removal API: " + removal);
+
+        File userConfig = File.createTempFile("loadtest-users", ".properties");
+        userConfig.deleteOnExit();
+        Files.write(userConfig.toPath(), ("user." + USER + " = " + USER + ",admin\n" +
+                "role.admin = get_info,remove_users\n").getBytes(StandardCharsets.UTF_8));
+
+        Vertx vertx = Vertx.vertx();
+        StandInBackends backends = new StandInBackends(InMemoryMongo.generateUsers(userCount), mongo, redis, removal);
+        StringBuilder summary = new StringBuilder();
+
+        // Profiles run one after another on the same machine and backends, so their results are comparable
+        for (String profile : profiles) {
+            int port = freePort();
+            JsonObject config = new JsonObject()
+                    .put("PORT", String.valueOf(port))
+                    .put("ENV", "loadtest")
+                    .put("MONGODB_URI", "mongodb://in-memory")
+                    .put("REDISCLOUD_URL", "redis://:in-memory@localhost:6379")
+                    .put("USER_CONFIG_PATH", userConfig.getAbsolutePath())
+                    .put("MAX_USER_REQUESTS", String.valueOf(Integer.MAX_VALUE))
+                    .put("MAX_TOTAL_REQUESTS", String.valueOf(Integer.MAX_VALUE))
+                    .put("SESSION_STORE", "local")
+                    .put("CONFIG_FILE", "")
+                    .put("HTTP_PROFILE", profile)
+                    .put("SERVICE_TRANSPORT", System.getProperty("loadtest.serviceTransport", "eventbus"))
+                    .put("HTTP_INSTANCES", System.getProperty("loadtest.instances",
+                            String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+            CompletableFuture<String> deployed = new CompletableFuture<>();
+            vertx.deployVerticle(new MainVerticle(backends), new DeploymentOptions().setConfig(config),
+                    ar -> complete(deployed, ar));
+            String deploymentId = deployed.get(60, TimeUnit.SECONDS);
+
+            HttpClientOptions clientOptions = new HttpClientOptions()
+                    .setDefaultHost("localhost")
+                    .setDefaultPort(port)
+                    .setKeepAlive(true)
+                    .setTryUseCompression(true)
+                    .setMaxPoolSize(Integer.getInteger("loadtest.connections", 64))
+                    .setMaxWaitQueueSize(-1);
+            if (http2) {
+                // h2c with prior knowledge, requests are multiplexed over the connections
+                clientOptions.setProtocolVersion(HttpVersion.HTTP_2).setHttp2ClearTextUpgrade(false)
+                        .setHttp2MaxPoolSize(Integer.getInteger("loadtest.connections", 64));
+            }
+            HttpClient client = vertx.createHttpClient(clientOptions);
+            Map<String, String> headers = Map.of("Cookie", login(client));
+
+            LoadGenerator generator = new LoadGenerator(vertx, client, requestTimeoutMs, sequence -> {
+                int index = ThreadLocalRandom.current().nextInt(userCount);
+                if (ThreadLocalRandom.current().nextDouble() < deleteShare) {
+                    return new LoadGenerator.Request("DELETE /users/phone/:phone", HttpMethod.DELETE,
+                            "/users/phone/" + InMemoryMongo.phoneNumber(index) + "?server=dev", headers);
+                }
+                return new LoadGenerator.Request("GET /users/:id/info", HttpMethod.GET,
+                        "/users/" + InMemoryMongo.userId(index) + "/info", headers);
+            });
+
+            System.out.println("Profile " + profile + ": warming up for " + warmupMs + " ms at " + rate + " req/s");
+            await(generator.run(rate, warmupMs));
+
+            System.out.println("Profile " + profile + ": measuring for " + durationMs + " ms at " + rate + " req/s");
+            long started = System.nanoTime();
+            Map<String, LoadGenerator.Stats> results = await(generator.run(rate, durationMs));
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            results.values().forEach(stats -> System.out.print(stats.report(durationMs)));
+            summary.append(summaryLine(profile, results, elapsedMs));
+
+            client.close();
+            CompletableFuture<Void> undeployed = new CompletableFuture<>();
+            vertx.undeploy(deploymentId, ar -> complete(undeployed, ar));
+            undeployed.get(60, TimeUnit.SECONDS);
+        }
+
+        System.out.print("Summary (" + (http2 ? "h2c" : "HTTP/1.1") + ", " + rate + " req/s offered):\n" + summary);
+
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(ar -> closed.complete(null));
+        closed.get(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Throughput is counted until the last response arrived, so a server falling behind the schedule shows up
+     */
+    private static String summaryLine(String profile, Map<String, LoadGenerator.Stats> results, long elapsedMs) {
+        long count = 0;
+        StringBuilder line = new StringBuilder();
+        for (LoadGenerator.Stats stats : results.values()) {
+            count += stats.getCount();
+            line.append(String.format(", %s p50=%.2fms p99=%.2fms", stats.getName(),
+                    stats.latencyMillis(0.5), stats.latencyMillis(0.99)));
+        }
+        return String.format("  %-8s %.1f req/s", profile, count * 1000.0 / elapsedMs) + line + '\n';
+    }
+
+    private static StandInBehavior behavior(String backend, long latencyMs, long jitterMs) {
+        String prefix = "loadtest." + backend;
+        return new StandInBehavior(
+                Long.getLong(prefix + "LatencyMs", latencyMs),
+                Long.getLong(prefix + "JitterMs", jitterMs),
+                Double.parseDouble(System.getProperty(prefix + "FailureRate", "0")));
+    }
+
+    private static String login(HttpClient client) throws Exception {
+        CompletableFuture<String> cookie = new CompletableFuture<>();
+        client.request(HttpMethod.POST, "/loginhandler", response -> {
+            for (String setCookie : response.cookies()) {
+                if (setCookie.startsWith("vertx-web.session=")) {
+                    cookie.complete(setCookie.split(";", 2)[0]);
+                    return;
+                }
+            }
+            cookie.completeExceptionally(new IllegalStateException("No session cookie, status: " + response.statusCode()));
+        })
+                .putHeader("Content-Type", "application/x-www-form-urlencoded")
+                .exceptionHandler(cookie::completeExceptionally)
+                .end("username=" + USER + "&password=" + USER);
+        return cookie.get(10, TimeUnit.SECONDS);
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.setHandler(ar -> complete(result, ar));
+        return result.get();
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, AsyncResult<T> ar) {
+        if (ar.succeeded()) {
+            future.complete(ar.result());
+        } else {
+            future.completeExceptionally(ar.cause());
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
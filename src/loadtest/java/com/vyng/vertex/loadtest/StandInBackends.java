@@ -0,0 +1,51 @@
+package com.vyng.vertex.loadtest;
+
+import com.vyng.vertex.service.Backends;
+import com.vyng.vertex.service.UserRemovalApi;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.redis.RedisClient;
+
+import java.util.Map;
+
+/**
+ * Backends answering from memory, so the whole server runs offline. Both Mongo databases serve the same users.
+ */
+public class StandInBackends extends Backends {
+
+    private final InMemoryMongo mongo;
+    private final InMemoryRedis redis;
+    private final StandInBehavior removalBehavior;
+
+    public StandInBackends(Map<String, JsonObject> users, StandInBehavior mongoBehavior,
+                           StandInBehavior redisBehavior, StandInBehavior removalBehavior) {
+        this.mongo = new InMemoryMongo(users, mongoBehavior);
+        this.redis = new InMemoryRedis(redisBehavior);
+        this.removalBehavior = removalBehavior;
+    }
+
+    public static StandInBackends immediate(Map<String, JsonObject> users) {
+        return new StandInBackends(users, StandInBehavior.immediate(), StandInBehavior.immediate(), StandInBehavior.immediate());
+    }
+
+    @Override
+    public MongoClient usersMongo(Vertx vertx) {
+        return mongo.client(vertx);
+    }
+
+    @Override
+    public MongoClient herokuMongo(Vertx vertx) {
+        return mongo.client(vertx);
+    }
+
+    @Override
+    public RedisClient redis(Vertx vertx) {
+        return redis.client(vertx);
+    }
+
+    @Override
+    public UserRemovalApi removalApi(Vertx vertx) {
+        return new InMemoryRemovalApi(vertx, removalBehavior);
+    }
+}
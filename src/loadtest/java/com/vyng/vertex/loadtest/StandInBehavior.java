@@ -0,0 +1,60 @@
+package com.vyng.vertex.loadtest;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * How a stand-in backend answers: after latencyMs plus a uniform random jitter of up to jitterMs,
+ * failing the given share of the calls.
+ * <p>
+ * Delayed answers go through a Vert.x timer, so they arrive on the context of the caller like real client callbacks.
+ */
+public class StandInBehavior {
+
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double failureRate;
+
+    public StandInBehavior(long latencyMs, long jitterMs, double failureRate) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.failureRate = failureRate;
+    }
+
+    public static StandInBehavior immediate() {
+        return new StandInBehavior(0, 0, 0);
+    }
+
+    /**
+     * The value is computed when the answer is sent
+     */
+    public <T> void answer(Vertx vertx, Handler<AsyncResult<T>> handler, Supplier<T> value) {
+        if (handler == null) {
+            return;
+        }
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (delay == 0) {
+            reply(handler, value);
+        } else {
+            vertx.setTimer(delay, __ -> reply(handler, value));
+        }
+    }
+
+    private <T> void reply(Handler<AsyncResult<T>> handler, Supplier<T> value) {
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            handler.handle(Future.failedFuture(new IllegalStateException("Injected stand-in failure")));
+        } else {
+            handler.handle(Future.succeededFuture(value.get()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "latency " + latencyMs + "ms + up to " + jitterMs + "ms, failure rate " + failureRate;
+    }
+}
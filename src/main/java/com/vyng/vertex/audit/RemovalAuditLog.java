@@ -0,0 +1,216 @@
+package com.vyng.vertex.audit;
+
+import com.vyng.vertex.metrics.Counter;
+import com.vyng.vertex.metrics.Metrics;
+import com.vyng.vertex.utils.Utils;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind audit trail of user removals: who removed which phone on which server, and how it went.
+ * <p>
+ * Events wait in a bounded ring buffer and are inserted into Mongo in batches, when AUDIT_BATCH_SIZE events
+ * are waiting or every AUDIT_FLUSH_PERIOD_MS. A failed batch stays in the buffer and is retried on the next flush.
+ * Every event gets its _id when it is recorded and is upserted on it, so a retry of a batch which failed part-way
+ * doesn't store the events already written twice.
+ * A removal has to {@link #reserve()} a slot before it starts, so when Mongo can't keep up removals are refused
+ * instead of going unaudited. {@link #close()} flushes whatever is left.
+ * Not thread-safe, owned by one verticle instance and used on its event loop.
+ */
+public class RemovalAuditLog {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("RemovalAuditLog");
+
+    private static final Counter RECORDED = Metrics.counter("vertex_audit_events_total", "state=\"recorded\"");
+    private static final Counter FLUSHED = Metrics.counter("vertex_audit_events_total", "state=\"flushed\"");
+    private static final Counter REFUSED = Metrics.counter("vertex_audit_events_total", "state=\"refused\"");
+    private static final Counter FLUSH_FAILURES = Metrics.counter("vertex_audit_flush_failures_total", "");
+
+    private final Vertx vertx;
+    private final MongoClient mongoClient;
+    private final String collection;
+    private final int batchSize;
+    private final long timerId;
+
+    // Events not yet in Mongo, oldest at head
+    private final JsonObject[] ring;
+    private int head;
+    private int size;
+    // Slots promised to removals in flight
+    private int reserved;
+    private boolean flushing;
+
+    public RemovalAuditLog(Vertx vertx, MongoClient mongoClient) {
+        this.vertx = vertx;
+        this.mongoClient = mongoClient;
+        this.collection = Utils.getParam("AUDIT_COLLECTION", "user_removals");
+        this.batchSize = Integer.parseInt(Utils.getParam("AUDIT_BATCH_SIZE", "100"));
+        this.ring = new JsonObject[Integer.parseInt(Utils.getParam("AUDIT_BUFFER_SIZE", "10000"))];
+        this.timerId = vertx.setPeriodic(Long.parseLong(Utils.getParam("AUDIT_FLUSH_PERIOD_MS", "1000")), __ -> flush());
+    }
+
+    /**
+     * Takes a slot for the event of a removal about to start
+     *
+     * @return false if the buffer is full, the removal must not start then
+     */
+    public boolean reserve() {
+        if (size + reserved >= ring.length) {
+            REFUSED.increment();
+            flush();
+            return false;
+        }
+        reserved++;
+        return true;
+    }
+
+    /**
+     * Records the outcome of a removal which reserved a slot
+     *
+     * @param code  204 for a removed user, the status of the failure otherwise
+     * @param error null for a removed user
+     */
+    public void record(String actor, String phone, String server, int code, String error) {
+        reserved--;
+        JsonObject event = new JsonObject()
+                .put("_id", new JsonObject().put("$oid", new ObjectId().toHexString()))
+                .put("phone", phone)
+                .put("server", server == null ? "dev" : server)
+                .put("user", actor)
+                .put("outcome", error == null ? "removed" : "failed")
+                .put("code", code)
+                .put("at", new JsonObject().put("$date", Instant.now().toString()));
+        if (error != null) {
+            event.put("error", error);
+        }
+        ring[(head + size) % ring.length] = event;
+        size++;
+        RECORDED.increment();
+        if (size >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Newest first: events of this instance not flushed yet, then the ones in Mongo. Events of a batch being
+     * written may be in both, they are taken from the buffer only
+     *
+     * @param phone null for removals of any phone
+     */
+    public Future<JsonArray> recent(int limit, String phone) {
+        JsonArray result = new JsonArray();
+        JsonArray bufferedIds = new JsonArray();
+        for (int i = size - 1; i >= 0 && result.size() < limit; i--) {
+            JsonObject event = ring[(head + i) % ring.length];
+            if (phone == null || phone.equals(event.getString("phone"))) {
+                JsonObject copy = event.copy();
+                bufferedIds.add(copy.remove("_id"));
+                result.add(copy);
+            }
+        }
+        if (result.size() >= limit) {
+            return Future.succeededFuture(result);
+        }
+
+        JsonObject query = phone == null ? new JsonObject() : new JsonObject().put("phone", phone);
+        if (!bufferedIds.isEmpty()) {
+            query.put("_id", new JsonObject().put("$nin", bufferedIds));
+        }
+        FindOptions options = new FindOptions()
+                .setSort(new JsonObject().put("at", -1))
+                .setLimit(limit - result.size())
+                .setFields(new JsonObject().put("_id", 0));
+        Promise<List<JsonObject>> found = Promise.promise();
+        mongoClient.findWithOptions(collection, query, options, found);
+        return found.future().map(stored -> {
+            stored.forEach(result::add);
+            return result;
+        });
+    }
+
+    /**
+     * Flushes the buffer until it is empty or Mongo fails. Events which couldn't be stored are logged
+     */
+    public Future<Void> close() {
+        vertx.cancelTimer(timerId);
+        Promise<Void> done = Promise.promise();
+        flushAll(done);
+        return done.future();
+    }
+
+    private void flushAll(Promise<Void> done) {
+        if (flushing) {
+            // Let the periodic flush in flight finish first, batches must not overlap
+            vertx.setTimer(10, __ -> flushAll(done));
+            return;
+        }
+        if (size == 0) {
+            done.complete();
+            return;
+        }
+        flushBatch().setHandler(ar -> {
+            if (ar.succeeded()) {
+                flushAll(done);
+            } else {
+                for (int i = 0; i < size; i++) {
+                    LOGGER.severe("Audit event not stored: " + ring[(head + i) % ring.length].encode());
+                }
+                done.complete();
+            }
+        });
+    }
+
+    private void flush() {
+        if (flushing || size == 0) {
+            return;
+        }
+        flushBatch().setHandler(ar -> {
+            if (ar.succeeded() && size >= batchSize) {
+                flush();
+            }
+        });
+    }
+
+    private Future<Void> flushBatch() {
+        int count = Math.min(size, batchSize);
+        // Upserts on the _id given when recorded: events stored by a failed attempt are not duplicated by the retry
+        List<BulkOperation> upserts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            JsonObject event = ring[(head + i) % ring.length];
+            upserts.add(BulkOperation.createReplace(new JsonObject().put("_id", event.getValue("_id")), event, true));
+        }
+
+        flushing = true;
+        Promise<MongoClientBulkWriteResult> written = Promise.promise();
+        mongoClient.bulkWriteWithOptions(collection, upserts, new BulkWriteOptions().setOrdered(false), written);
+        return written.future().map(__ -> {
+            flushing = false;
+            for (int i = 0; i < count; i++) {
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+            }
+            size -= count;
+            FLUSHED.add(count);
+            return (Void) null;
+        }).recover(cause -> {
+            flushing = false;
+            FLUSH_FAILURES.increment();
+            LOGGER.warning("Could not flush " + count + " audit events, " + size + " waiting: " + cause);
+            return Future.failedFuture(cause);
+        });
+    }
+}
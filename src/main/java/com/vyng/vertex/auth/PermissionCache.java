@@ -0,0 +1,76 @@
+package com.vyng.vertex.auth;
+
+import com.vyng.vertex.cache.LruCache;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.ext.auth.User;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Authorization decisions per principal, so an authenticated request doesn't go to the Shiro realm every time.
+ * <p>
+ * Decisions of a principal are dropped on logout on any instance ({@link #INVALIDATE_ADDRESS} gets the username),
+ * all of them are dropped when the user config file is reloaded.
+ * Not thread safe: one cache per verticle instance, used from its event loop.
+ */
+public class PermissionCache {
+
+    public static final String INVALIDATE_ADDRESS = "auth.permissions.invalidate";
+
+    private final Vertx vertx;
+    private final ReloadableShiroAuth authProvider;
+    private final LruCache<String, Map<String, Boolean>> decisions;
+
+    public PermissionCache(Vertx vertx, ReloadableShiroAuth authProvider, int maxPrincipals, long ttlMillis) {
+        this.vertx = vertx;
+        this.authProvider = authProvider;
+        this.decisions = new LruCache<>(maxPrincipals, ttlMillis);
+        vertx.eventBus().<String>consumer(INVALIDATE_ADDRESS, message -> decisions.remove(message.body()));
+    }
+
+    public Future<Boolean> isAuthorized(User user, String authority) {
+        String principal = principal(user);
+        Map<String, Boolean> cached = principal == null ? null : decisions.get(principal);
+        Boolean decision = cached == null ? null : cached.get(authority);
+        if (decision != null) {
+            return Future.succeededFuture(decision);
+        }
+
+        // The user could have been authenticated or restored from a session with an older version of the config
+        user.setAuthProvider(authProvider.current());
+        user.clearCache();
+        Promise<Boolean> result = Promise.promise();
+        user.isAuthorized(authority, ar -> {
+            if (ar.succeeded() && principal != null) {
+                Map<String, Boolean> principalDecisions = cached != null ? cached : new HashMap<>();
+                principalDecisions.put(authority, ar.result());
+                if (cached == null) {
+                    decisions.put(principal, principalDecisions);
+                }
+            }
+            result.handle(ar);
+        });
+        return result.future();
+    }
+
+    /**
+     * Drops decisions of the principal on all the instances
+     */
+    public void invalidate(User user) {
+        String principal = principal(user);
+        if (principal != null) {
+            vertx.eventBus().publish(INVALIDATE_ADDRESS, principal);
+        }
+    }
+
+    public void clear() {
+        decisions.clear();
+    }
+
+    private static String principal(User user) {
+        return user.principal() == null ? null : user.principal().getString("username");
+    }
+}
@@ -0,0 +1,88 @@
+package com.vyng.vertex.auth;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.AuthProvider;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.shiro.ShiroAuth;
+import io.vertx.ext.auth.shiro.ShiroAuthOptions;
+import io.vertx.ext.auth.shiro.ShiroAuthRealmType;
+
+import java.util.logging.Logger;
+
+import static io.vertx.ext.auth.shiro.PropertiesProviderConstants.PROPERTIES_PROPS_PATH_FIELD;
+
+/**
+ * Shiro properties file auth that picks up changes of the file without a restart.
+ * The file is polled, on change a new provider is built off the event loop and the reload handler is called.
+ */
+public class ReloadableShiroAuth implements AuthProvider {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("ReloadableShiroAuth");
+
+    private final Vertx vertx;
+    private final String path;
+    private final Handler<Void> reloadHandler;
+    private final long watchTimerId;
+
+    private volatile ShiroAuth current;
+    private long lastModified;
+
+    public ReloadableShiroAuth(Vertx vertx, String path, long pollPeriodMillis, Handler<Void> reloadHandler) {
+        this.vertx = vertx;
+        this.path = path;
+        this.reloadHandler = reloadHandler;
+        this.current = create();
+        this.lastModified = lastModifiedSync();
+        this.watchTimerId = vertx.setPeriodic(pollPeriodMillis, __ -> checkForChanges());
+    }
+
+    @Override
+    public void authenticate(JsonObject authInfo, Handler<AsyncResult<User>> resultHandler) {
+        current.authenticate(authInfo, resultHandler);
+    }
+
+    /**
+     * Provider built from the latest version of the file. Users authorized against an older version
+     * have to be bound to it with {@link User#setAuthProvider(AuthProvider)}.
+     */
+    public ShiroAuth current() {
+        return current;
+    }
+
+    public void close() {
+        vertx.cancelTimer(watchTimerId);
+    }
+
+    private void checkForChanges() {
+        vertx.fileSystem().props(path, ar -> {
+            if (ar.failed() || ar.result().lastModifiedTime() == lastModified) {
+                return;
+            }
+            lastModified = ar.result().lastModifiedTime();
+            // Shiro reads the file synchronously
+            vertx.<ShiroAuth>executeBlocking(promise -> promise.complete(create()), false, created -> {
+                if (created.failed()) {
+                    LOGGER.severe("Could not reload user config: " + created.cause());
+                    return;
+                }
+                current = created.result();
+                LOGGER.info("User config reloaded");
+                reloadHandler.handle(null);
+            });
+        });
+    }
+
+    private ShiroAuth create() {
+        ShiroAuthOptions options = new ShiroAuthOptions()
+                .setType(ShiroAuthRealmType.PROPERTIES)
+                .setConfig(new JsonObject().put(PROPERTIES_PROPS_PATH_FIELD, path));
+        return ShiroAuth.create(vertx, options);
+    }
+
+    private long lastModifiedSync() {
+        return vertx.fileSystem().existsBlocking(path) ? vertx.fileSystem().propsBlocking(path).lastModifiedTime() : 0;
+    }
+}
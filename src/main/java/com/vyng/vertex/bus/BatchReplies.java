@@ -0,0 +1,64 @@
+package com.vyng.vertex.bus;
+
+import com.vyng.vertex.resilience.Deadline;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+
+import java.util.List;
+
+/**
+ * Service side of a streamed batch lookup. Every chunk is sent as a reply as soon as it is resolved, the client
+ * asks for the next one by replying to it once the chunk is written, so a slow HTTP client holds back the queries.
+ * The end is an empty chunk marked last, or a failure.
+ * Not thread-safe, used on the event loop of the service verticle.
+ */
+public final class BatchReplies {
+
+    // How long a client without a deadline may take to write a chunk
+    private static final long ACK_TIMEOUT_MS = 30_000;
+
+    private final Deadline deadline;
+    // The message the next chunk answers, null once the client gave up
+    private Message<?> current;
+
+    public BatchReplies(Message<LookupRequest> request, Deadline deadline) {
+        this.current = request;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Completes when the client asks for the next chunk, fails when it gave up
+     */
+    public Future<Void> send(List<Buffer> chunk) {
+        if (current == null) {
+            return Future.failedFuture("The client gave up the batch");
+        }
+        Promise<Void> acked = Promise.promise();
+        current.<Void>replyAndRequest(new UserInfoBatch(chunk, false), ServiceBus.deliveryOptions(deadline, ACK_TIMEOUT_MS),
+                ar -> {
+                    if (ar.succeeded()) {
+                        current = ar.result();
+                        acked.complete();
+                    } else {
+                        current = null;
+                        acked.fail(ServiceBus.exception(ar.cause()));
+                    }
+                });
+        return acked.future();
+    }
+
+    public void end(AsyncResult<Void> result) {
+        if (current == null) {
+            return;
+        }
+        if (result.succeeded()) {
+            current.reply(new UserInfoBatch(List.of(), true));
+        } else {
+            ServiceBus.fail(current, result.cause());
+        }
+        current = null;
+    }
+}
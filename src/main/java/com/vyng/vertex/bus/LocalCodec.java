@@ -0,0 +1,54 @@
+package com.vyng.vertex.bus;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import java.util.function.Function;
+
+/**
+ * Codec for immutable message classes: in the same JVM the sent object itself is delivered, nothing is copied
+ * or encoded. The wire form, used only by a clustered event bus, is the encoded object prefixed with its length.
+ */
+public class LocalCodec<T> implements MessageCodec<T, T> {
+
+    private final Class<T> type;
+    private final Function<T, Buffer> encoder;
+    private final Function<Buffer, T> decoder;
+
+    public LocalCodec(Class<T> type, Function<T, Buffer> encoder, Function<Buffer, T> decoder) {
+        this.type = type;
+        this.encoder = encoder;
+        this.decoder = decoder;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, T message) {
+        Buffer encoded = encoder.apply(message);
+        buffer.appendInt(encoded.length()).appendBuffer(encoded);
+    }
+
+    @Override
+    public T decodeFromWire(int pos, Buffer buffer) {
+        int length = buffer.getInt(pos);
+        return decoder.apply(buffer.getBuffer(pos + 4, pos + 4 + length));
+    }
+
+    @Override
+    public T transform(T message) {
+        return message;
+    }
+
+    @Override
+    public String name() {
+        return "local-" + type.getName();
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
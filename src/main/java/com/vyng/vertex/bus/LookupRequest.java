@@ -0,0 +1,53 @@
+package com.vyng.vertex.bus;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * User info lookup sent to {@link ServiceBus#USER_INFO_GET} (one id) or {@link ServiceBus#USER_INFO_BATCH}.
+ * Immutable, delivered as is within the JVM.
+ */
+public final class LookupRequest {
+
+    static final LocalCodec<LookupRequest> CODEC = new LocalCodec<>(LookupRequest.class,
+            request -> request.toJson().toBuffer(), buffer -> fromJson(buffer.toJsonObject()));
+
+    private final List<String> ids;
+    private final String remoteIp;
+    private final long timeoutMs;
+
+    public LookupRequest(List<String> ids, String remoteIp, long timeoutMs) {
+        this.ids = List.copyOf(ids);
+        this.remoteIp = remoteIp;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public String getRemoteIp() {
+        return remoteIp;
+    }
+
+    /**
+     * Time left until the deadline of the request when it was sent
+     */
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    private JsonObject toJson() {
+        return new JsonObject()
+                .put("ids", new JsonArray(List.copyOf(ids)))
+                .put("remoteIp", remoteIp)
+                .put("timeoutMs", timeoutMs);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LookupRequest fromJson(JsonObject json) {
+        return new LookupRequest(json.getJsonArray("ids").getList(), json.getString("remoteIp"), json.getLong("timeoutMs"));
+    }
+}
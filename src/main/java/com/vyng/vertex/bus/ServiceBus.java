@@ -0,0 +1,133 @@
+package com.vyng.vertex.bus;
+
+import com.vyng.vertex.error.BackendUnavailableException;
+import com.vyng.vertex.error.DeadlineExceededException;
+import com.vyng.vertex.error.NotFoundException;
+import com.vyng.vertex.error.QueryLimitReachedException;
+import com.vyng.vertex.error.RemoteApiException;
+import com.vyng.vertex.error.ValidationException;
+import com.vyng.vertex.model.UserInfo;
+import com.vyng.vertex.resilience.Deadline;
+import com.vyng.vertex.utils.Errors;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.impl.NoStackTraceThrowable;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Event bus addresses of the services, their message codecs and how failures travel over the bus:
+ * a service fails a message with the HTTP status of the failure, the client turns it back into the exception
+ * the HTTP handlers expect.
+ */
+public final class ServiceBus {
+
+    public static final String USER_INFO_GET = "vertex.users.info.get";
+    public static final String USER_INFO_BATCH = "vertex.users.info.batch";
+    public static final String USER_REMOVE = "vertex.users.remove";
+    public static final String USER_REMOVALS = "vertex.users.removals";
+
+    // Lets the service answer with its own 504 before the sender gives up
+    private static final long TIMEOUT_GRACE_MS = 100;
+
+    private static final LocalCodec<UserInfo> USER_INFO_CODEC = new LocalCodec<>(UserInfo.class,
+            user -> user.toJson().toBuffer(), buffer -> UserInfo.fromJson(buffer.toJsonObject()));
+
+    private static final Set<Vertx> REGISTERED = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private ServiceBus() {
+    }
+
+    /**
+     * Registers the codecs of the message classes as their defaults, once per Vert.x instance.
+     * Needed on both sides, before the first message is sent
+     */
+    public static void registerCodecs(Vertx vertx) {
+        if (!REGISTERED.add(vertx)) {
+            return;
+        }
+        EventBus eventBus = vertx.eventBus();
+        register(eventBus, LookupRequest.CODEC);
+        register(eventBus, UserInfoBatch.CODEC);
+        register(eventBus, USER_INFO_CODEC);
+    }
+
+    private static <T> void register(EventBus eventBus, LocalCodec<T> codec) {
+        eventBus.registerDefaultCodec(codec.getType(), codec);
+    }
+
+    /**
+     * Send timeout of a request: the time left until the deadline, or the given default without one
+     */
+    static DeliveryOptions deliveryOptions(Deadline deadline, long defaultTimeoutMs) {
+        long remaining = deadline.remainingMs();
+        long timeout = remaining == Long.MAX_VALUE ? defaultTimeoutMs : Math.max(1, remaining) + TIMEOUT_GRACE_MS;
+        return new DeliveryOptions().setSendTimeout(timeout);
+    }
+
+    /**
+     * Deadline of a received request, see {@link #deliveryOptions(Deadline, long)}
+     */
+    public static Deadline deadline(long timeoutMs) {
+        return timeoutMs == Long.MAX_VALUE ? Deadline.none() : Deadline.after(timeoutMs);
+    }
+
+    public static void fail(Message<?> message, Throwable cause) {
+        message.fail(statusOf(cause), cause.getMessage() != null ? cause.getMessage() : cause.toString());
+    }
+
+    private static int statusOf(Throwable cause) {
+        if (cause instanceof NotFoundException) {
+            return 404;
+        }
+        if (cause instanceof QueryLimitReachedException) {
+            return 429;
+        }
+        if (cause instanceof BackendUnavailableException || cause instanceof DeadlineExceededException
+                || cause instanceof RemoteApiException) {
+            return Errors.status(cause);
+        }
+        // Validation errors of the lookups are failed with a plain message
+        if (cause instanceof IllegalArgumentException || cause instanceof NoStackTraceThrowable) {
+            return 400;
+        }
+        return 500;
+    }
+
+    /**
+     * Turns a failed reply back into the exception the service failed with
+     */
+    static Throwable exception(Throwable cause) {
+        if (!(cause instanceof ReplyException)) {
+            return cause;
+        }
+        ReplyException reply = (ReplyException) cause;
+        switch (reply.failureType()) {
+            case TIMEOUT:
+                return new DeadlineExceededException("No answer from " + reply.getMessage());
+            case NO_HANDLERS:
+                return new BackendUnavailableException("No service instance: " + reply.getMessage());
+            default:
+                break;
+        }
+        switch (reply.failureCode()) {
+            case 400:
+                return new ValidationException(reply.getMessage());
+            case 404:
+                return new NotFoundException(reply.getMessage());
+            case 429:
+                return new QueryLimitReachedException(reply.getMessage());
+            case 503:
+                return new BackendUnavailableException(reply.getMessage());
+            case 504:
+                return new DeadlineExceededException(reply.getMessage());
+            default:
+                return new RemoteApiException(reply.failureCode(), reply.getMessage());
+        }
+    }
+}
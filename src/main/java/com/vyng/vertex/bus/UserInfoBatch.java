@@ -0,0 +1,56 @@
+package com.vyng.vertex.bus;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One chunk of the reply to a batch lookup: the elements of the result, already encoded as json, and whether
+ * it is the last one. Immutable, and the buffers are only read by the receiver, so they are delivered as they are
+ * within the JVM. See {@link BatchReplies} for how the chunks are streamed.
+ */
+public final class UserInfoBatch {
+
+    static final LocalCodec<UserInfoBatch> CODEC = new LocalCodec<>(UserInfoBatch.class,
+            UserInfoBatch::encode, UserInfoBatch::decode);
+
+    private final List<Buffer> elements;
+    private final boolean last;
+
+    public UserInfoBatch(List<Buffer> elements, boolean last) {
+        this.elements = List.copyOf(elements);
+        this.last = last;
+    }
+
+    public List<Buffer> getElements() {
+        return elements;
+    }
+
+    public boolean isLast() {
+        return last;
+    }
+
+    private static Buffer encode(UserInfoBatch batch) {
+        Buffer buffer = Buffer.buffer();
+        buffer.appendByte((byte) (batch.last ? 1 : 0));
+        buffer.appendInt(batch.elements.size());
+        for (Buffer element : batch.elements) {
+            buffer.appendInt(element.length()).appendBuffer(element);
+        }
+        return buffer;
+    }
+
+    private static UserInfoBatch decode(Buffer buffer) {
+        boolean last = buffer.getByte(0) == 1;
+        int count = buffer.getInt(1);
+        List<Buffer> elements = new ArrayList<>(count);
+        int pos = 5;
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt(pos);
+            elements.add(buffer.getBuffer(pos + 4, pos + 4 + length));
+            pos += 4 + length;
+        }
+        return new UserInfoBatch(elements, last);
+    }
+}
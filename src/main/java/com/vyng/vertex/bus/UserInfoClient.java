@@ -0,0 +1,77 @@
+package com.vyng.vertex.bus;
+
+import com.vyng.vertex.model.UserInfo;
+import com.vyng.vertex.resilience.Deadline;
+import com.vyng.vertex.service.UserInfoOperations;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Sends user info lookups to the user info verticles over the event bus.
+ * <p>
+ * A batch is resolved by one service instance and streamed back chunk by chunk, see {@link BatchReplies}.
+ * The next chunk is asked for only after the chunkHandler is done with the last one.
+ */
+public class UserInfoClient implements UserInfoOperations {
+
+    private final Vertx vertx;
+    private final long defaultTimeoutMs;
+
+    public UserInfoClient(Vertx vertx, long defaultTimeoutMs) {
+        this.vertx = vertx;
+        this.defaultTimeoutMs = defaultTimeoutMs;
+        ServiceBus.registerCodecs(vertx);
+    }
+
+    @Override
+    public Future<UserInfo> getUserInfo(String id, String remoteIp, Deadline deadline) {
+        Promise<Message<UserInfo>> reply = Promise.promise();
+        vertx.eventBus().request(ServiceBus.USER_INFO_GET, new LookupRequest(List.of(id), remoteIp, deadline.remainingMs()),
+                ServiceBus.deliveryOptions(deadline, defaultTimeoutMs), reply);
+        return reply.future()
+                .map(Message::body)
+                .recover(cause -> Future.failedFuture(ServiceBus.exception(cause)));
+    }
+
+    @Override
+    public Future<Void> getUsersInfo(List<String> ids, String remoteIp, Deadline deadline,
+                                     Function<List<Buffer>, Future<Void>> chunkHandler) {
+        Promise<Void> done = Promise.promise();
+        vertx.eventBus().<UserInfoBatch>request(ServiceBus.USER_INFO_BATCH,
+                new LookupRequest(ids, remoteIp, deadline.remainingMs()),
+                ServiceBus.deliveryOptions(deadline, defaultTimeoutMs),
+                ar -> onChunk(ar, deadline, chunkHandler, done));
+        return done.future();
+    }
+
+    private void onChunk(AsyncResult<Message<UserInfoBatch>> ar, Deadline deadline,
+                         Function<List<Buffer>, Future<Void>> chunkHandler, Promise<Void> done) {
+        if (ar.failed()) {
+            done.fail(ServiceBus.exception(ar.cause()));
+            return;
+        }
+        Message<UserInfoBatch> message = ar.result();
+        UserInfoBatch batch = message.body();
+        if (batch.isLast()) {
+            done.complete();
+            return;
+        }
+        chunkHandler.apply(batch.getElements()).setHandler(written -> {
+            if (written.failed()) {
+                // Stops the service from querying the rest
+                ServiceBus.fail(message, written.cause());
+                done.fail(written.cause());
+                return;
+            }
+            message.<UserInfoBatch>replyAndRequest(null, ServiceBus.deliveryOptions(deadline, defaultTimeoutMs),
+                    next -> onChunk(next, deadline, chunkHandler, done));
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.vyng.vertex.bus;
+
+import com.vyng.vertex.resilience.Deadline;
+import com.vyng.vertex.service.BulkRemoval;
+import com.vyng.vertex.service.RemoveUserService;
+import com.vyng.vertex.service.UserRemovalOperations;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Sends user removals to the user removal verticles over the event bus.
+ * <p>
+ * A bulk removal is run here, as single removals spread over the service instances, so its results can be
+ * streamed with the backpressure of the response.
+ */
+public class UserRemovalClient implements UserRemovalOperations {
+
+    private final Vertx vertx;
+    private final long defaultTimeoutMs;
+    private final int bulkConcurrency;
+
+    public UserRemovalClient(Vertx vertx, long defaultTimeoutMs) {
+        this.vertx = vertx;
+        this.defaultTimeoutMs = defaultTimeoutMs;
+        this.bulkConcurrency = RemoveUserService.bulkConcurrency();
+        ServiceBus.registerCodecs(vertx);
+    }
+
+    @Override
+    public Future<Void> deleteUser(String phone, String server, String actor, Deadline deadline) {
+        JsonObject request = new JsonObject()
+                .put("phone", phone)
+                .put("server", server)
+                .put("user", actor)
+                .put("timeoutMs", deadline.remainingMs());
+        return this.<Void>request(ServiceBus.USER_REMOVE, request, deadline).mapEmpty();
+    }
+
+    @Override
+    public Future<Void> deleteUsers(List<String> phones, String server, String actor, Deadline deadline,
+                                    Function<JsonObject, Future<Void>> resultHandler) {
+        return new BulkRemoval(phones, bulkConcurrency,
+                phone -> deleteUser(phone, server, actor, deadline), resultHandler).start();
+    }
+
+    @Override
+    public Future<JsonArray> recentRemovals(int limit, String phone, Deadline deadline) {
+        JsonObject request = new JsonObject()
+                .put("limit", limit)
+                .put("phone", phone)
+                .put("timeoutMs", deadline.remainingMs());
+        return request(ServiceBus.USER_REMOVALS, request, deadline);
+    }
+
+    @Override
+    public Future<Void> close() {
+        return Future.succeededFuture();
+    }
+
+    private <T> Future<T> request(String address, JsonObject request, Deadline deadline) {
+        Promise<Message<T>> reply = Promise.promise();
+        vertx.eventBus().request(address, request, ServiceBus.deliveryOptions(deadline, defaultTimeoutMs), reply);
+        return reply.future()
+                .map(Message::body)
+                .recover(cause -> Future.failedFuture(ServiceBus.exception(cause)));
+    }
+}
@@ -0,0 +1,114 @@
+package com.vyng.vertex.cache;
+
+import com.vyng.vertex.metrics.Metrics;
+import com.vyng.vertex.utils.Utils;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.MongoClient;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * In-memory copy of the phones_to_delete collection, so the whitelist check of a removal doesn't query Mongo.
+ * <p>
+ * Loaded on start, then kept fresh by polling: every WHITELIST_SYNC_MS the entries with an _id greater than the last
+ * one seen are added, every WHITELIST_RELOAD_MS the whole collection is reloaded to drop removed entries.
+ * A phone missing from the copy is not necessarily refused, the caller should ask Mongo then,
+ * see {@link #add(String)}.
+ * Not thread-safe, meant to be owned by one verticle instance and used on its event loop.
+ */
+public class PhoneWhitelist {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("PhoneWhitelist");
+
+    private static final String COLLECTION = "phones_to_delete";
+    private static final JsonObject FIELDS = new JsonObject().put("_id", 1).put("phone", 1);
+
+    private final Vertx vertx;
+    private final MongoClient mongoClient;
+    private final long reloadPeriodMs;
+    private final long timerId;
+
+    private Set<String> phones = new HashSet<>();
+    private String lastId;
+    private long loadedAt;
+    private boolean syncing;
+
+    public PhoneWhitelist(Vertx vertx, MongoClient mongoClient) {
+        this.vertx = vertx;
+        this.mongoClient = mongoClient;
+        this.reloadPeriodMs = Long.parseLong(Utils.getParam("WHITELIST_RELOAD_MS", "300000"));
+        this.timerId = vertx.setPeriodic(Long.parseLong(Utils.getParam("WHITELIST_SYNC_MS", "5000")), __ -> sync());
+        sync();
+    }
+
+    public boolean contains(String phone) {
+        return phones.contains(phone);
+    }
+
+    /**
+     * Adds a phone found in Mongo after the last sync, so the next removals of it don't ask Mongo again
+     */
+    public void add(String phone) {
+        phones.add(phone);
+    }
+
+    public int size() {
+        return phones.size();
+    }
+
+    public void close() {
+        vertx.cancelTimer(timerId);
+    }
+
+    private void sync() {
+        if (syncing) {
+            return;
+        }
+        syncing = true;
+        boolean reload = lastId == null || System.currentTimeMillis() - loadedAt >= reloadPeriodMs;
+        JsonObject query = reload
+                ? new JsonObject()
+                : new JsonObject().put("_id", new JsonObject().put("$gt", new JsonObject().put("$oid", lastId)));
+        FindOptions options = new FindOptions().setFields(FIELDS).setSort(new JsonObject().put("_id", 1));
+        long started = System.nanoTime();
+
+        Promise<List<JsonObject>> found = Promise.promise();
+        mongoClient.findWithOptions(COLLECTION, query, options, found);
+        found.future().setHandler(ar -> {
+            syncing = false;
+            if (ar.failed()) {
+                // The copy we have stays in use, misses go to Mongo anyway
+                Metrics.WHITELIST_SYNC_FAILURES.increment();
+                LOGGER.warning("Could not sync the phone whitelist: " + ar.cause());
+                return;
+            }
+            Set<String> target = reload ? new HashSet<>(ar.result().size() * 2) : phones;
+            String newLastId = reload ? null : lastId;
+            for (JsonObject entry : ar.result()) {
+                String phone = entry.getString("phone");
+                if (phone != null) {
+                    target.add(phone);
+                }
+                Object id = entry.getValue("_id");
+                if (id instanceof JsonObject && ((JsonObject) id).getString("$oid") != null) {
+                    newLastId = ((JsonObject) id).getString("$oid");
+                }
+            }
+            if (reload) {
+                phones = target;
+                loadedAt = System.currentTimeMillis();
+                LOGGER.fine("Phone whitelist loaded: " + phones.size() + " phones in "
+                        + (System.nanoTime() - started) / 1_000_000 + " ms");
+            }
+            // Without ObjectIds there is nothing to sync incrementally from, the next sync reloads everything
+            lastId = newLastId;
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package com.vyng.vertex.cache;
+
+import com.vyng.vertex.metrics.Counter;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key: while a call is in flight, later callers wait for its result
+ * instead of starting their own.
+ * <p>
+ * Every caller gets its own future, as a Vert.x future takes a single handler.
+ * Not thread-safe, meant to be owned by one verticle instance and used on its event loop.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, List<Promise<V>>> waiting = new HashMap<>();
+    private final Counter executedCounter;
+    private final Counter coalescedCounter;
+
+    private long executed;
+    private long coalesced;
+
+    /**
+     * @param executedCounter  process wide count of the calls made
+     * @param coalescedCounter process wide count of the callers which waited for a call in flight
+     */
+    public SingleFlight(Counter executedCounter, Counter coalescedCounter) {
+        this.executedCounter = executedCounter;
+        this.coalescedCounter = coalescedCounter;
+    }
+
+    /**
+     * A call throwing instead of returning a future fails the caller and the ones which joined it meanwhile,
+     * the next caller with the key starts a new call
+     */
+    public Future<V> execute(K key, Supplier<Future<V>> call) {
+        Promise<V> result = Promise.promise();
+        List<Promise<V>> waiters = waiting.get(key);
+        if (waiters != null) {
+            coalesced++;
+            coalescedCounter.increment();
+            waiters.add(result);
+            return result.future();
+        }
+
+        executed++;
+        executedCounter.increment();
+        waiters = new ArrayList<>(1);
+        waiters.add(result);
+        // Registered before the call, it may complete right away
+        waiting.put(key, waiters);
+        Future<V> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException ex) {
+            complete(key, Future.failedFuture(ex));
+            return result.future();
+        }
+        future.setHandler(ar -> complete(key, ar));
+        return result.future();
+    }
+
+    private void complete(K key, AsyncResult<V> ar) {
+        for (Promise<V> waiter : waiting.remove(key)) {
+            waiter.handle(ar);
+        }
+    }
+
+    public int inFlight() {
+        return waiting.size();
+    }
+
+    public long executed() {
+        return executed;
+    }
+
+    public long coalesced() {
+        return coalesced;
+    }
+}
@@ -0,0 +1,203 @@
+package com.vyng.vertex.cache;
+
+import com.vyng.vertex.config.AppConfig;
+import com.vyng.vertex.error.NotFoundException;
+import com.vyng.vertex.metrics.Metrics;
+import com.vyng.vertex.model.UserInfo;
+import com.vyng.vertex.utils.Utils;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.RedisClient;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Read-through cache for user info.
+ * <p>
+ * First tier is an in-process LRU owned by the verticle instance, second tier is an optional shared Redis tier.
+ * Not found results are cached too, with a shorter TTL. Entries are dropped when a user is removed:
+ * {@link #INVALIDATE_ADDRESS} receives the removed phone number from any verticle instance.
+ * Concurrent misses for the same id share one lookup of the Redis tier and the loader.
+ * Hits, misses and evictions are counted in {@link Metrics}.
+ */
+public class UserInfoCache {
+
+    public static final String INVALIDATE_ADDRESS = "users.cache.invalidate";
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("UserInfoCache");
+
+    // Marks a cached "not found" result. Compared by identity
+    private static final UserInfo NOT_FOUND = new UserInfo(null, null, null);
+    private static final String REDIS_NOT_FOUND = "null";
+
+    // Read from the config of the verticle creating the cache, not on class loading
+    private final long ttlSeconds;
+    private final long negativeTtlSeconds;
+    private final boolean redisTierEnabled;
+    private final String keyUser;
+    private final String keyPhone;
+
+    private final RedisClient redisClient;
+    private final LruCache<String, UserInfo> users;
+    private final LruCache<String, String> idsByPhone;
+    private final SingleFlight<String, UserInfo> lookups =
+            new SingleFlight<>(Metrics.USER_LOOKUPS_LOADED, Metrics.USER_LOOKUPS_COALESCED);
+
+    public UserInfoCache(Vertx vertx, RedisClient redisClient) {
+        this.redisClient = redisClient;
+        int size = Integer.parseInt(Utils.getParam("USER_CACHE_SIZE", "10000"));
+        this.ttlSeconds = Long.parseLong(Utils.getParam("USER_CACHE_TTL_SECONDS", "300"));
+        this.negativeTtlSeconds = Long.parseLong(Utils.getParam("USER_CACHE_NEGATIVE_TTL_SECONDS", "30"));
+        this.redisTierEnabled = Boolean.parseBoolean(Utils.getParam("USER_CACHE_REDIS_ENABLED", "false"));
+        // Same env as the rate limit keys
+        String env = AppConfig.current().getEnv();
+        this.keyUser = env + ":cache:user:";
+        this.keyPhone = env + ":cache:user:phone:";
+        this.users = new LruCache<>(size, TimeUnit.SECONDS.toMillis(ttlSeconds), Metrics.USER_CACHE_EVICTIONS);
+        this.idsByPhone = new LruCache<>(size, TimeUnit.SECONDS.toMillis(ttlSeconds));
+        vertx.eventBus().<String>consumer(INVALIDATE_ADDRESS, message -> invalidateByPhone(message.body()));
+    }
+
+    /**
+     * Returns the cached user info or loads it with the loader and caches the result.
+     * The loader is expected to fail with {@link NotFoundException} for missing users.
+     */
+    public Future<UserInfo> get(String id, Supplier<Future<UserInfo>> loader) {
+        UserInfo cached = users.get(id);
+        if (cached != null) {
+            Metrics.USER_CACHE_LOCAL_HITS.increment();
+            return fromCached(id, cached);
+        }
+        Metrics.USER_CACHE_LOCAL_MISSES.increment();
+        return lookups.execute(id, () -> getShared(id, loader));
+    }
+
+    private Future<UserInfo> getShared(String id, Supplier<Future<UserInfo>> loader) {
+        if (!redisTierEnabled) {
+            return load(id, loader);
+        }
+        return getFromRedis(id).compose(shared -> {
+            if (shared == null) {
+                Metrics.USER_CACHE_REDIS_MISSES.increment();
+                return load(id, loader);
+            }
+            Metrics.USER_CACHE_REDIS_HITS.increment();
+            UserInfo entry = REDIS_NOT_FOUND.equals(shared) ? NOT_FOUND : UserInfo.fromJson(new JsonObject(shared));
+            putLocal(id, entry);
+            return fromCached(id, entry);
+        });
+    }
+
+    /**
+     * Local tier only lookup for batch reads.
+     *
+     * @return null if the id is not cached, otherwise a completed future (failed with {@link NotFoundException}
+     * for cached not found results)
+     */
+    public Future<UserInfo> getIfPresent(String id) {
+        UserInfo cached = users.get(id);
+        if (cached == null) {
+            Metrics.USER_CACHE_LOCAL_MISSES.increment();
+            return null;
+        }
+        Metrics.USER_CACHE_LOCAL_HITS.increment();
+        return fromCached(id, cached);
+    }
+
+    public void put(String id, UserInfo entry) {
+        putLocal(id, entry);
+        putRedis(id, entry);
+    }
+
+    public void putNotFound(String id) {
+        putLocal(id, NOT_FOUND);
+        putRedis(id, NOT_FOUND);
+    }
+
+    public void invalidateByPhone(String phone) {
+        String id = idsByPhone.remove(phone);
+        if (id != null) {
+            users.remove(id);
+        }
+        if (redisTierEnabled) {
+            redisClient.get(keyPhone + phone, ar -> {
+                if (ar.succeeded() && ar.result() != null) {
+                    redisClient.delMany(Arrays.asList(keyUser + ar.result(), keyPhone + phone), __ -> {
+                    });
+                }
+            });
+        }
+    }
+
+    private Future<UserInfo> load(String id, Supplier<Future<UserInfo>> loader) {
+        Promise<UserInfo> result = Promise.promise();
+        loader.get().setHandler(ar -> {
+            if (ar.succeeded()) {
+                put(id, ar.result());
+                result.complete(ar.result());
+            } else {
+                if (ar.cause() instanceof NotFoundException) {
+                    putNotFound(id);
+                }
+                result.fail(ar.cause());
+            }
+        });
+        return result.future();
+    }
+
+    private Future<UserInfo> fromCached(String id, UserInfo cached) {
+        if (cached == NOT_FOUND) {
+            return Future.failedFuture(new NotFoundException("Object with the id was not found: " + id));
+        }
+        return Future.succeededFuture(cached);
+    }
+
+    private void putLocal(String id, UserInfo entry) {
+        if (entry == NOT_FOUND) {
+            users.put(id, NOT_FOUND, TimeUnit.SECONDS.toMillis(negativeTtlSeconds));
+            return;
+        }
+        users.put(id, entry);
+        String phone = entry.getPhoneNumber();
+        if (phone != null) {
+            idsByPhone.put(phone, id);
+        }
+    }
+
+    private Future<String> getFromRedis(String id) {
+        Promise<String> result = Promise.promise();
+        redisClient.get(keyUser + id, ar -> {
+            if (ar.failed()) {
+                // The shared tier is an optimization only, go to the database if it is not available
+                LOGGER.warning("Could not read user info cache from Redis: " + ar.cause());
+                result.complete(null);
+            } else {
+                result.complete(ar.result());
+            }
+        });
+        return result.future();
+    }
+
+    private void putRedis(String id, UserInfo entry) {
+        if (!redisTierEnabled) {
+            return;
+        }
+        if (entry == NOT_FOUND) {
+            redisClient.setex(keyUser + id, negativeTtlSeconds, REDIS_NOT_FOUND, __ -> {
+            });
+            return;
+        }
+        redisClient.setex(keyUser + id, ttlSeconds, entry.toJson().encode(), __ -> {
+        });
+        String phone = entry.getPhoneNumber();
+        if (phone != null) {
+            redisClient.setex(keyPhone + phone, ttlSeconds, id, __ -> {
+            });
+        }
+    }
+}
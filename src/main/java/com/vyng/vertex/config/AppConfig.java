@@ -0,0 +1,168 @@
+package com.vyng.vertex.config;
+
+import com.mongodb.lang.NonNull;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed, immutable snapshot of the settings which can change while the server runs: rate limits,
+ * removal API endpoints and token.
+ * <p>
+ * Parsed and validated once, then published to all the verticle instances of the process at once,
+ * see {@link #publish(AppConfig)}. Request handlers read {@link #current()}, a volatile read with no lookup.
+ * Settings used only on start stay with {@link com.vyng.vertex.utils.Utils#getParam(String)}.
+ */
+public final class AppConfig {
+
+    /**
+     * Local event bus address getting the new snapshot after a change was published
+     */
+    public static final String CHANGED_ADDRESS = "vertex.config.changed";
+
+    private static volatile AppConfig current;
+
+    private final String env;
+    private final int maxUserRequests;
+    private final int maxTotalRequests;
+    private final int exportMaxRequests;
+    private final String removeUserDevEndpoint;
+    private final String removeUserProdEndpoint;
+    private final String deleteToken;
+
+    private AppConfig(Source source) {
+        this.env = source.get("ENV", "unknown");
+        this.maxUserRequests = source.getPositiveInt("MAX_USER_REQUESTS", null);
+        this.maxTotalRequests = source.getPositiveInt("MAX_TOTAL_REQUESTS", null);
+        this.exportMaxRequests = source.getPositiveInt("EXPORT_MAX_REQUESTS", "20");
+        this.removeUserDevEndpoint = source.get("REMOVE_USER_DEV_ENDPOINT", "");
+        this.removeUserProdEndpoint = source.get("REMOVE_USER_PROD_ENDPOINT", "");
+        this.deleteToken = source.get("DELETE_TOKEN", "");
+    }
+
+    /**
+     * Reads the settings from the config, falling back to the environment like Utils.getParam
+     *
+     * @throws IllegalStateException listing all the missing and invalid settings
+     */
+    public static AppConfig from(JsonObject config) {
+        Source source = new Source(config);
+        AppConfig parsed = new AppConfig(source);
+        if (!source.errors.isEmpty()) {
+            throw new IllegalStateException(String.join(", ", source.errors));
+        }
+        return parsed;
+    }
+
+    /**
+     * The last published snapshot. Verticles deployed without {@link ConfigWatcher}, e.g. in a benchmark,
+     * get one made from the config of the first caller
+     */
+    @NonNull
+    public static AppConfig current() {
+        AppConfig config = current;
+        if (config == null) {
+            synchronized (AppConfig.class) {
+                if (current == null) {
+                    current = from(Vertx.currentContext().config());
+                }
+                config = current;
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Makes the snapshot visible to all the verticle instances and, if it replaces another one,
+     * tells them on {@link #CHANGED_ADDRESS}
+     */
+    public static void publish(Vertx vertx, AppConfig config) {
+        AppConfig previous = current;
+        current = config;
+        if (previous != null && previous != config) {
+            vertx.eventBus().publish(CHANGED_ADDRESS, null);
+        }
+    }
+
+    public String getEnv() {
+        return env;
+    }
+
+    public int getMaxUserRequests() {
+        return maxUserRequests;
+    }
+
+    public int getMaxTotalRequests() {
+        return maxTotalRequests;
+    }
+
+    public int getExportMaxRequests() {
+        return exportMaxRequests;
+    }
+
+    public String getRemoveUserDevEndpoint() {
+        return removeUserDevEndpoint;
+    }
+
+    public String getRemoveUserProdEndpoint() {
+        return removeUserProdEndpoint;
+    }
+
+    public String getDeleteToken() {
+        return deleteToken;
+    }
+
+    /**
+     * For logs, without the token
+     */
+    @Override
+    public String toString() {
+        return "env=" + env +
+                ", maxUserRequests=" + maxUserRequests +
+                ", maxTotalRequests=" + maxTotalRequests +
+                ", exportMaxRequests=" + exportMaxRequests +
+                ", removeUserDevEndpoint=" + removeUserDevEndpoint +
+                ", removeUserProdEndpoint=" + removeUserProdEndpoint;
+    }
+
+    // Collects all the errors instead of failing on the first one
+    private static class Source {
+
+        private final JsonObject config;
+        private final List<String> errors = new ArrayList<>();
+
+        private Source(JsonObject config) {
+            this.config = config;
+        }
+
+        private String get(String key, String def) {
+            Object value = config.getValue(key);
+            String param = value != null ? String.valueOf(value) : System.getenv(key);
+            if (param == null) {
+                param = def;
+            }
+            if (param == null) {
+                errors.add("Param is not set: " + key);
+            }
+            return param;
+        }
+
+        private int getPositiveInt(String key, String def) {
+            String value = get(key, def);
+            if (value == null) {
+                return 0;
+            }
+            try {
+                int parsed = Integer.parseInt(value.trim());
+                if (parsed > 0) {
+                    return parsed;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            errors.add("Param is not a positive number: " + key);
+            return 0;
+        }
+    }
+}
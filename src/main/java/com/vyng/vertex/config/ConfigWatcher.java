@@ -0,0 +1,91 @@
+package com.vyng.vertex.config;
+
+import io.vertx.config.ConfigRetriever;
+import io.vertx.config.ConfigRetrieverOptions;
+import io.vertx.config.ConfigStoreOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.util.logging.Logger;
+
+/**
+ * Source of {@link AppConfig}: the deployment config (-conf) overridden by CONFIG_FILE
+ * (config/my-application-conf.json by default, empty to disable), checked for changes every CONFIG_SCAN_PERIOD_MS.
+ * <p>
+ * A change is published only if the whole new config is valid, otherwise the running one stays.
+ * The environment of a process can't change while it runs, so env values are read once, like before.
+ * Settings outside of {@link AppConfig} are applied on the next start.
+ */
+public class ConfigWatcher {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("ConfigWatcher");
+
+    private final ConfigRetriever retriever;
+    private final JsonObject config;
+
+    private ConfigWatcher(ConfigRetriever retriever, JsonObject config) {
+        this.retriever = retriever;
+        this.config = config;
+    }
+
+    /**
+     * Reads the config and publishes the first snapshot. Fails if the config is not valid
+     */
+    public static Future<ConfigWatcher> start(Vertx vertx, JsonObject deploymentConfig) {
+        String path = param(deploymentConfig, "CONFIG_FILE", "config/my-application-conf.json");
+        ConfigRetrieverOptions options = new ConfigRetrieverOptions()
+                .setScanPeriod(Long.parseLong(param(deploymentConfig, "CONFIG_SCAN_PERIOD_MS", "5000")))
+                .addStore(new ConfigStoreOptions().setType("json").setConfig(deploymentConfig));
+        if (!path.isEmpty()) {
+            options.addStore(new ConfigStoreOptions()
+                    .setType("file")
+                    .setFormat("json")
+                    .setOptional(true)
+                    .setConfig(new JsonObject().put("path", path)));
+        }
+        ConfigRetriever retriever = ConfigRetriever.create(vertx, options);
+
+        Promise<JsonObject> loaded = Promise.promise();
+        retriever.getConfig(loaded);
+        return loaded.future().map(config -> {
+            AppConfig.publish(vertx, AppConfig.from(config));
+            retriever.listen(change -> reload(vertx, change.getNewConfiguration()));
+            return new ConfigWatcher(retriever, config);
+        }).recover(cause -> {
+            retriever.close();
+            return Future.failedFuture(cause);
+        });
+    }
+
+    /**
+     * Merged config read on start
+     */
+    public JsonObject getConfig() {
+        return config;
+    }
+
+    public void close() {
+        retriever.close();
+    }
+
+    private static void reload(Vertx vertx, JsonObject config) {
+        AppConfig next;
+        try {
+            next = AppConfig.from(config);
+        } catch (IllegalStateException ex) {
+            LOGGER.severe("Config change ignored, the running config stays: " + ex.getMessage());
+            return;
+        }
+        AppConfig.publish(vertx, next);
+        LOGGER.info("Config reloaded: " + next);
+    }
+
+    private static String param(JsonObject config, String key, String def) {
+        // Numbers and booleans of a json config are taken as they are written
+        Object value = config.getValue(key);
+        String param = value != null ? String.valueOf(value) : System.getenv(key);
+        return param == null ? def : param;
+    }
+}
@@ -0,0 +1,8 @@
+package com.vyng.vertex.error;
+
+public class BackendUnavailableException extends RuntimeException {
+
+    public BackendUnavailableException(String message) {
+        super(message);
+    }
+}
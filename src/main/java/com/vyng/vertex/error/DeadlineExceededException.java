@@ -0,0 +1,8 @@
+package com.vyng.vertex.error;
+
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.vyng.vertex.error;
+
+public class RemoteApiException extends RuntimeException {
+
+    private final int statusCode;
+
+    public RemoteApiException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
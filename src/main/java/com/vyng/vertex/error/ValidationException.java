@@ -0,0 +1,11 @@
+package com.vyng.vertex.error;
+
+/**
+ * Input rejected before any backend was called, answered with 400
+ */
+public class ValidationException extends IllegalArgumentException {
+
+    public ValidationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,48 @@
+package com.vyng.vertex.logging;
+
+import com.vyng.vertex.utils.ResponseEndHandlers;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compact access log, one structured record per request to the "access" logger: method, path, status,
+ * latency in ms, bytes of the response body and the remote address.
+ * Requests ended by a closed or reset connection are logged too, with "reset=true".
+ */
+public class AccessLogHandler implements Handler<RoutingContext> {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("access");
+
+    public static AccessLogHandler create() {
+        return new AccessLogHandler();
+    }
+
+    @Override
+    public void handle(RoutingContext rc) {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            long started = System.nanoTime();
+            ResponseEndHandlers.add(rc, __ -> log(rc, started));
+        }
+        rc.next();
+    }
+
+    private static void log(RoutingContext rc, long started) {
+        HttpServerRequest request = rc.request();
+        HttpServerResponse response = rc.response();
+        double latencyMs = (System.nanoTime() - started) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        Log.info(LOGGER, "request",
+                "method", request.rawMethod(),
+                "path", request.path(),
+                "status", response.getStatusCode(),
+                "ms", Math.round(latencyMs * 100) / 100.0,
+                "bytes", response.bytesWritten(),
+                "remote", request.remoteAddress() == null ? null : request.remoteAddress().host(),
+                "reset", !response.ended());
+    }
+}
@@ -0,0 +1,148 @@
+package com.vyng.vertex.logging;
+
+import com.vyng.vertex.metrics.Counter;
+import com.vyng.vertex.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+/**
+ * JUL handler which only queues records, a writer thread formats them and passes them to the target handlers.
+ * Logging threads never wait for I/O or for each other: the queue is lock-free and bounded, records arriving
+ * while it is full are dropped and counted. The last slots are kept for WARNING and above, so a flood of
+ * INFO records, like the access log under load, can't push the failures out.
+ * <p>
+ * Configured in the logging properties:
+ * com.vyng.vertex.logging.AsyncHandler.targets - comma separated handler classes, ConsoleHandler by default,
+ * com.vyng.vertex.logging.AsyncHandler.queueSize - 65536 by default,
+ * com.vyng.vertex.logging.AsyncHandler.warningReserve - slots only WARNING and above may take, 1/8 of the queue by default.
+ * Records left in the queue are written on close, which the LogManager does on JVM shutdown.
+ */
+public class AsyncHandler extends Handler {
+
+    private static final Counter DROPPED = Metrics.counter("vertex_log_records_dropped_total", "");
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private final Queue<LogRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int capacity;
+    // Records below WARNING are dropped above it
+    private final int lowLevelCapacity;
+    private final List<Handler> targets;
+    private final Thread writer;
+
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    public AsyncHandler() {
+        LogManager manager = LogManager.getLogManager();
+        String prefix = AsyncHandler.class.getName();
+        String queueSize = manager.getProperty(prefix + ".queueSize");
+        String targetNames = manager.getProperty(prefix + ".targets");
+        String warningReserve = manager.getProperty(prefix + ".warningReserve");
+        this.capacity = queueSize == null ? 65536 : Integer.parseInt(queueSize.trim());
+        int reserve = warningReserve == null ? capacity / 8 : Integer.parseInt(warningReserve.trim());
+        this.lowLevelCapacity = Math.max(0, capacity - reserve);
+        this.targets = createTargets(targetNames == null ? "java.util.logging.ConsoleHandler" : targetNames);
+
+        this.writer = new Thread(this::drain, "vertex-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        int limit = record.getLevel().intValue() >= Level.WARNING.intValue() ? capacity : lowLevelCapacity;
+        if (queued.incrementAndGet() > limit) {
+            queued.decrementAndGet();
+            DROPPED.increment();
+            return;
+        }
+        queue.offer(record);
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    @Override
+    public void flush() {
+        for (Handler target : targets) {
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (Handler target : targets) {
+            target.close();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            LogRecord record = queue.poll();
+            if (record != null) {
+                queued.decrementAndGet();
+                write(record);
+                continue;
+            }
+            // The queue is empty: flush the burst just written, then sleep until a record arrives
+            flush();
+            if (closed) {
+                return;
+            }
+            idle = true;
+            if (queue.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            idle = false;
+        }
+    }
+
+    private void write(LogRecord record) {
+        for (Handler target : targets) {
+            try {
+                target.publish(record);
+            } catch (RuntimeException ex) {
+                reportError("Could not write a log record", ex, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    private List<Handler> createTargets(String classNames) {
+        List<Handler> handlers = new ArrayList<>();
+        for (String className : classNames.split(",")) {
+            if (className.isBlank()) {
+                continue;
+            }
+            try {
+                handlers.add((Handler) ClassLoader.getSystemClassLoader().loadClass(className.trim())
+                        .getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                reportError("Could not create the log handler " + className, ex, ErrorManager.OPEN_FAILURE);
+            }
+        }
+        return handlers;
+    }
+}
@@ -0,0 +1,100 @@
+package com.vyng.vertex.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * One line per record: time, level, logger, message and, for {@link StructuredRecord}, key=value fields.
+ * Values with spaces, quotes or line breaks are quoted and escaped, so a line can't be forged through a value.
+ */
+public class KeyValueFormatter extends Formatter {
+
+    @Override
+    public String format(LogRecord record) {
+        StringBuilder line = new StringBuilder(128)
+                .append(Instant.ofEpochMilli(record.getMillis()))
+                .append(' ').append(record.getLevel().getName())
+                .append(' ').append(record.getLoggerName())
+                .append(' ');
+        if (record instanceof StructuredRecord) {
+            line.append(record.getMessage());
+            Object[] fields = ((StructuredRecord) record).getFields();
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                line.append(' ').append(fields[i]).append('=');
+                appendValue(line, fields[i + 1]);
+            }
+        } else {
+            // Plain messages are kept as they are, only line breaks are escaped
+            String message = formatMessage(record);
+            for (int i = 0; i < message.length(); i++) {
+                char c = message.charAt(i);
+                if (c == '\n') {
+                    line.append("\\n");
+                } else if (c == '\r') {
+                    line.append("\\r");
+                } else {
+                    line.append(c);
+                }
+            }
+        }
+        line.append('\n');
+        if (record.getThrown() != null) {
+            StringWriter trace = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+        return line.toString();
+    }
+
+    private static void appendValue(StringBuilder line, Object value) {
+        String text = String.valueOf(value);
+        if (!needsQuotes(text)) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        appendEscaped(line, text);
+        line.append('"');
+    }
+
+    private static boolean needsQuotes(String text) {
+        if (text.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c <= ' ' || c == '"' || c == '=') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendEscaped(StringBuilder line, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+    }
+}
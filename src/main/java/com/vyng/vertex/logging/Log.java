@@ -0,0 +1,39 @@
+package com.vyng.vertex.logging;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Structured logging on top of JUL: an event name plus key/value pairs, e.g.
+ * {@code Log.info(LOGGER, "user_deleted", "phone", phone, "server", server)}.
+ * <p>
+ * Nothing is concatenated or formatted on the calling thread, see {@link StructuredRecord}.
+ * Values should be immutable: strings, numbers, or objects whose toString() is safe to call later from another thread.
+ */
+public final class Log {
+
+    private Log() {
+    }
+
+    public static void fine(Logger logger, String event, Object... fields) {
+        log(logger, Level.FINE, event, fields);
+    }
+
+    public static void info(Logger logger, String event, Object... fields) {
+        log(logger, Level.INFO, event, fields);
+    }
+
+    public static void warning(Logger logger, String event, Object... fields) {
+        log(logger, Level.WARNING, event, fields);
+    }
+
+    public static void severe(Logger logger, String event, Object... fields) {
+        log(logger, Level.SEVERE, event, fields);
+    }
+
+    public static void log(Logger logger, Level level, String event, Object... fields) {
+        if (logger.isLoggable(level)) {
+            logger.log(new StructuredRecord(level, logger.getName(), event, fields));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.vyng.vertex.logging;
+
+import com.vyng.vertex.utils.Utils;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets through one of every N success-path log records of a route, failures should be logged without sampling.
+ * <p>
+ * N is LOG_SAMPLE_EVERY_&lt;ROUTE&gt; (route name in upper case) or LOG_SAMPLE_EVERY, 100 by default. 1 logs everything.
+ * Samplers are shared by all the verticle instances, safe to use from any thread.
+ */
+public class LogSampler {
+
+    private static final ConcurrentMap<String, LogSampler> SAMPLERS = new ConcurrentHashMap<>();
+
+    private final int every;
+    private final AtomicLong calls = new AtomicLong();
+
+    private LogSampler(int every) {
+        this.every = Math.max(1, every);
+    }
+
+    /**
+     * The config is read on the first call for a route, make it from a verticle context
+     */
+    public static LogSampler forRoute(String route) {
+        return SAMPLERS.computeIfAbsent(route, name -> new LogSampler(Integer.parseInt(
+                Utils.getParam("LOG_SAMPLE_EVERY_" + name.toUpperCase(Locale.ROOT), Utils.getParam("LOG_SAMPLE_EVERY", "100")))));
+    }
+
+    public boolean sample() {
+        return every == 1 || calls.getAndIncrement() % every == 0;
+    }
+}
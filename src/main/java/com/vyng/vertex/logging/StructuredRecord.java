@@ -0,0 +1,29 @@
+package com.vyng.vertex.logging;
+
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Log record with an event name and key/value fields. The fields are kept as they are and turned into text
+ * only by the formatter, on the writer thread of {@link AsyncHandler}, so they must not be mutated after logging.
+ */
+public class StructuredRecord extends LogRecord {
+
+    private final Object[] fields;
+
+    StructuredRecord(Level level, String loggerName, String event, Object[] fields) {
+        super(level, event);
+        this.fields = fields;
+        setLoggerName(loggerName);
+        // Stops the record from looking up the caller, which would be the writer thread
+        setSourceClassName(loggerName);
+        setSourceMethodName(null);
+    }
+
+    /**
+     * Keys at even positions, values at odd ones
+     */
+    public Object[] getFields() {
+        return fields;
+    }
+}
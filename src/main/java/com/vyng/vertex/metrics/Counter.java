@@ -0,0 +1,38 @@
+package com.vyng.vertex.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter, lock-free and safe to increment from any thread.
+ */
+public class Counter {
+
+    private final String name;
+    private final String labels;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, String labels) {
+        this.name = name;
+        this.labels = labels;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLabels() {
+        return labels;
+    }
+}
@@ -0,0 +1,41 @@
+package com.vyng.vertex.metrics;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic timer on the event loop of a verticle. The difference between the time it fires
+ * and the time it was due is the time the event loop was busy with something else.
+ */
+public class EventLoopLagProbe implements Handler<Long> {
+
+    private static final long PERIOD_MS = 100;
+
+    private final Vertx vertx;
+    private final LatencyHistogram histogram;
+    private long timerId = -1;
+    private long expectedAt;
+
+    public EventLoopLagProbe(Vertx vertx, LatencyHistogram histogram) {
+        this.vertx = vertx;
+        this.histogram = histogram;
+    }
+
+    public void start() {
+        expectedAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PERIOD_MS);
+        timerId = vertx.setPeriodic(PERIOD_MS, this);
+    }
+
+    public void stop() {
+        vertx.cancelTimer(timerId);
+    }
+
+    @Override
+    public void handle(Long timerId) {
+        long now = System.nanoTime();
+        histogram.record(now - expectedAt);
+        expectedAt = now + TimeUnit.MILLISECONDS.toNanos(PERIOD_MS);
+    }
+}
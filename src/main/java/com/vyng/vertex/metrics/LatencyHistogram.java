@@ -0,0 +1,113 @@
+package com.vyng.vertex.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HDR-style latency histogram: log-linear buckets over microseconds with 8 sub-buckets per power of two,
+ * so any recorded value is known with 12.5% precision, from 1µs up to hours.
+ * <p>
+ * Recording is lock-free (atomic increments only) and doesn't allocate, it is safe to call from any thread.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_POWER = 36;
+    static final int BUCKET_COUNT = ((MAX_POWER - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + SUB_BUCKETS;
+
+    private final String name;
+    private final String labels;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    public LatencyHistogram(String name, String labels) {
+        this.name = name;
+        this.labels = labels;
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucketIndex(nanos / 1000));
+        count.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLabels() {
+        return labels;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSumNanos() {
+        return sumNanos.get();
+    }
+
+    /**
+     * @return number of recorded values below the given number of microseconds, which must be a power of two
+     */
+    public long countBelowPowerOfTwo(long micros) {
+        int limit = bucketIndex(micros);
+        long below = 0;
+        for (int i = 0; i < limit; i++) {
+            below += buckets.get(i);
+        }
+        return below;
+    }
+
+    /**
+     * @return upper bound in microseconds of the bucket holding the given quantile, 0 if nothing is recorded
+     */
+    public long quantileMicros(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKET_COUNT - 1);
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = msb - SUB_BUCKET_BITS;
+        int index = ((shift + 1) << SUB_BUCKET_BITS) + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index + 1;
+        }
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        long lower = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lower + (1L << shift);
+    }
+}
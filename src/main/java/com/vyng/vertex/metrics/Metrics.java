@@ -0,0 +1,156 @@
+package com.vyng.vertex.metrics;
+
+import com.vyng.vertex.utils.ResponseEndHandlers;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process wide metrics shared by all the verticle instances, exposed in the Prometheus text format.
+ * <p>
+ * Histograms and counters are created up front (at class init or when the router is built),
+ * the request path only records into them. Recording doesn't allocate, timing does: {@link #routeTimer(String)}
+ * and {@link #timed(LatencyHistogram, Handler)} cost one small callback object per request or backend call.
+ */
+public final class Metrics {
+
+    private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+
+    private static final String ROUTE_DURATION = "vertex_http_request_duration_seconds";
+    private static final String BACKEND_DURATION = "vertex_backend_duration_seconds";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    // Prometheus buckets: powers of two from 1µs to ~67s. Full precision is available through the quantiles
+    private static final int MAX_BUCKET_POWER = 26;
+
+    public static final LatencyHistogram REDIS_RATE_LIMIT = histogram(BACKEND_DURATION, "backend=\"redis\",op=\"rate_limit\"");
+    public static final LatencyHistogram MONGO_FIND_USER = histogram(BACKEND_DURATION, "backend=\"mongo\",op=\"find_user\"");
+    public static final LatencyHistogram MONGO_FIND_USERS = histogram(BACKEND_DURATION, "backend=\"mongo\",op=\"find_users\"");
+    public static final LatencyHistogram REMOVAL_API = histogram(BACKEND_DURATION, "backend=\"removal_api\",op=\"delete\"");
+    public static final LatencyHistogram EVENT_LOOP_LAG = histogram("vertex_event_loop_lag_seconds", "");
+
+    public static final Counter RATE_LIMIT_REJECTIONS_REDIS = counter("vertex_rate_limit_rejections_total", "source=\"redis\"");
+    public static final Counter RATE_LIMIT_REJECTIONS_LOCAL = counter("vertex_rate_limit_rejections_total", "source=\"local\"");
+    public static final Counter TOO_MANY_REQUESTS = counter("vertex_http_responses_429_total", "");
+    public static final Counter LOAD_SHED = counter("vertex_load_shed_total", "");
+    public static final Counter USER_LOOKUPS_LOADED = counter("vertex_user_lookups_total", "path=\"load\"");
+    public static final Counter USER_LOOKUPS_COALESCED = counter("vertex_user_lookups_total", "path=\"coalesced\"");
+    public static final Counter USER_CACHE_LOCAL_HITS = counter("vertex_user_cache_requests_total", "tier=\"local\",result=\"hit\"");
+    public static final Counter USER_CACHE_LOCAL_MISSES = counter("vertex_user_cache_requests_total", "tier=\"local\",result=\"miss\"");
+    public static final Counter USER_CACHE_REDIS_HITS = counter("vertex_user_cache_requests_total", "tier=\"redis\",result=\"hit\"");
+    public static final Counter USER_CACHE_REDIS_MISSES = counter("vertex_user_cache_requests_total", "tier=\"redis\",result=\"miss\"");
+    public static final Counter USER_CACHE_EVICTIONS = counter("vertex_user_cache_evictions_total", "");
+    public static final Counter WHITELIST_HITS = counter("vertex_whitelist_checks_total", "source=\"memory\"");
+    public static final Counter WHITELIST_FALLBACKS = counter("vertex_whitelist_checks_total", "source=\"mongo\"");
+    public static final Counter WHITELIST_SYNC_FAILURES = counter("vertex_whitelist_sync_failures_total", "");
+
+    private Metrics() {
+    }
+
+    public static LatencyHistogram histogram(String name, String labels) {
+        return HISTOGRAMS.computeIfAbsent(name + '{' + labels + '}', __ -> new LatencyHistogram(name, labels));
+    }
+
+    public static Counter counter(String name, String labels) {
+        return COUNTERS.computeIfAbsent(name + '{' + labels + '}', __ -> new Counter(name, labels));
+    }
+
+    /**
+     * First handler of a route: records the time until the response is sent, or until the connection
+     * is closed or reset before that, see {@link ResponseEndHandlers}
+     */
+    public static Handler<RoutingContext> routeTimer(String route) {
+        LatencyHistogram histogram = histogram(ROUTE_DURATION, "route=\"" + route + "\"");
+        return rc -> {
+            long start = System.nanoTime();
+            ResponseEndHandlers.add(rc, __ -> histogram.recordSince(start));
+            rc.next();
+        };
+    }
+
+    /**
+     * Wraps a callback of a backend call, the time is counted from this call until the result arrives
+     */
+    public static <T> Handler<AsyncResult<T>> timed(LatencyHistogram histogram, Handler<AsyncResult<T>> handler) {
+        long start = System.nanoTime();
+        return ar -> {
+            histogram.recordSince(start);
+            handler.handle(ar);
+        };
+    }
+
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+
+        List<Counter> counters = new ArrayList<>(COUNTERS.values());
+        counters.sort(Comparator.comparing(Counter::getName).thenComparing(Counter::getLabels));
+        String family = null;
+        for (Counter counter : counters) {
+            if (!counter.getName().equals(family)) {
+                family = counter.getName();
+                out.append("# TYPE ").append(family).append(" counter\n");
+            }
+            out.append(family).append(labels(counter.getLabels(), null)).append(' ').append(counter.get()).append('\n');
+        }
+
+        List<LatencyHistogram> histograms = new ArrayList<>(HISTOGRAMS.values());
+        histograms.sort(Comparator.comparing(LatencyHistogram::getName).thenComparing(LatencyHistogram::getLabels));
+        family = null;
+        for (LatencyHistogram histogram : histograms) {
+            if (!histogram.getName().equals(family)) {
+                family = histogram.getName();
+                out.append("# TYPE ").append(family).append(" histogram\n");
+            }
+            writeHistogram(out, histogram);
+        }
+
+        family = null;
+        for (LatencyHistogram histogram : histograms) {
+            String name = histogram.getName() + "_quantile";
+            if (!name.equals(family)) {
+                family = name;
+                out.append("# TYPE ").append(family).append(" gauge\n");
+            }
+            for (double quantile : QUANTILES) {
+                out.append(name).append(labels(histogram.getLabels(), "quantile=\"" + quantile + '"'))
+                        .append(' ').append(seconds(histogram.quantileMicros(quantile) * 1000)).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeHistogram(StringBuilder out, LatencyHistogram histogram) {
+        String name = histogram.getName();
+        for (int power = 0; power <= MAX_BUCKET_POWER; power++) {
+            long micros = 1L << power;
+            out.append(name).append("_bucket")
+                    .append(labels(histogram.getLabels(), "le=\"" + seconds(micros * 1000) + '"'))
+                    .append(' ').append(histogram.countBelowPowerOfTwo(micros)).append('\n');
+        }
+        long count = histogram.getCount();
+        out.append(name).append("_bucket").append(labels(histogram.getLabels(), "le=\"+Inf\""))
+                .append(' ').append(count).append('\n');
+        out.append(name).append("_sum").append(labels(histogram.getLabels(), null))
+                .append(' ').append(seconds(histogram.getSumNanos())).append('\n');
+        out.append(name).append("_count").append(labels(histogram.getLabels(), null))
+                .append(' ').append(count).append('\n');
+    }
+
+    private static String labels(String labels, String extra) {
+        if (extra == null) {
+            return labels.isEmpty() ? "" : '{' + labels + '}';
+        }
+        return labels.isEmpty() ? '{' + extra + '}' : '{' + labels + ',' + extra + '}';
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
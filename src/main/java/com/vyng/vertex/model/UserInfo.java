@@ -0,0 +1,63 @@
+package com.vyng.vertex.model;
+
+import com.vyng.vertex.error.NotFoundException;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Projected fields of a user document. Immutable, so it can be cached and shared without copying.
+ */
+public class UserInfo {
+
+    private final String id;
+    private final String phoneNumber;
+    private final String createdAt;
+
+    public UserInfo(String id, String phoneNumber, String createdAt) {
+        this.id = id;
+        this.phoneNumber = phoneNumber;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Reads a document as it comes from Mongo, with {"$oid"} and {"$date"} wrappers, without modifying it
+     *
+     * @throws NotFoundException if there is no document
+     */
+    public static UserInfo fromDocument(String id, JsonObject document) {
+        if (document == null) {
+            throw new NotFoundException("Object with the id was not found: " + id);
+        }
+        JsonObject objectId = document.getJsonObject("_id");
+        JsonObject createdAt = document.getJsonObject("createdAt");
+        return new UserInfo(
+                objectId != null ? objectId.getString("$oid") : id,
+                document.getString("phoneNumber"),
+                createdAt != null ? createdAt.getString("$date") : null);
+    }
+
+    /**
+     * Reads the flat form produced by {@link #toJson()}
+     */
+    public static UserInfo fromJson(JsonObject json) {
+        return new UserInfo(json.getString("_id"), json.getString("phoneNumber"), json.getString("createdAt"));
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+                .put("_id", id)
+                .put("phoneNumber", phoneNumber)
+                .put("createdAt", createdAt);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getCreatedAt() {
+        return createdAt;
+    }
+}
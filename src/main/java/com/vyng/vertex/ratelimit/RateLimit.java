@@ -0,0 +1,30 @@
+package com.vyng.vertex.ratelimit;
+
+/**
+ * One counter checked by {@link RateLimiter}: a Redis key, the max number of hits in the window
+ * and the error returned to the client when the limit is reached.
+ */
+public class RateLimit {
+
+    private final String key;
+    private final int maxRequests;
+    private final String error;
+
+    public RateLimit(String key, int maxRequests, String error) {
+        this.key = key;
+        this.maxRequests = maxRequests;
+        this.error = error;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,150 @@
+package com.vyng.vertex.ratelimit;
+
+import com.vyng.vertex.error.QueryLimitReachedException;
+import com.vyng.vertex.metrics.Metrics;
+import com.vyng.vertex.utils.RedisScript;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.redis.RedisClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed window rate limiter on top of Redis counters.
+ * <p>
+ * All the counters of one check are incremented by a single script call, so it is one round trip
+ * and the TTL is set in the same atomic step as the increment (a key can't be left without expiration).
+ * <p>
+ * Optionally remembers keys that are already over the limit and rejects them locally until the window ends.
+ * Not thread safe: every verticle instance owns its own limiter and uses it from its event loop only.
+ */
+public class RateLimiter {
+
+    // Returns a flat array: count1, ttl1, count2, ttl2, ...
+    private static final RedisScript INCREMENT_SCRIPT = new RedisScript(
+            "local window = tonumber(ARGV[1])\n" +
+            "local result = {}\n" +
+            "for i, key in ipairs(KEYS) do\n" +
+            "  local count = redis.call('INCR', key)\n" +
+            "  local ttl = redis.call('TTL', key)\n" +
+            "  if ttl < 0 then\n" +
+            "    redis.call('EXPIRE', key, window)\n" +
+            "    ttl = window\n" +
+            "  end\n" +
+            "  result[#result + 1] = count\n" +
+            "  result[#result + 1] = ttl\n" +
+            "end\n" +
+            "return result\n");
+
+    private static final int MAX_BLOCKED_KEYS = 10_000;
+
+    private final RedisClient redisClient;
+    private final List<String> scriptArgs;
+    private final boolean localPrecheck;
+    private final Map<String, Long> blockedUntil = new HashMap<>();
+
+    public RateLimiter(RedisClient redisClient, int windowSeconds, boolean localPrecheck) {
+        this.redisClient = redisClient;
+        this.scriptArgs = Collections.singletonList(String.valueOf(windowSeconds));
+        this.localPrecheck = localPrecheck;
+    }
+
+    /**
+     * Counts one hit against every limit. Fails with {@link QueryLimitReachedException}
+     * carrying the error of the first exceeded limit.
+     */
+    public Future<Void> acquire(RateLimit... limits) {
+        if (localPrecheck) {
+            RateLimit blocked = findLocallyBlocked(limits);
+            if (blocked != null) {
+                Metrics.RATE_LIMIT_REJECTIONS_LOCAL.increment();
+                return Future.failedFuture(new QueryLimitReachedException(blocked.getError()));
+            }
+        }
+
+        List<String> keys = new ArrayList<>(limits.length);
+        for (RateLimit limit : limits) {
+            keys.add(limit.getKey());
+        }
+
+        Promise<JsonArray> result = Promise.promise();
+        Handler<AsyncResult<JsonArray>> timedResult = Metrics.timed(Metrics.REDIS_RATE_LIMIT, result);
+        INCREMENT_SCRIPT.eval(redisClient, keys, scriptArgs).setHandler(timedResult);
+        return result.future().map(counters -> {
+            checkCounters(limits, counters);
+            return null;
+        });
+    }
+
+    /**
+     * Forgets the keys known to be over their limits, e.g. after the limits were raised
+     */
+    public void clearBlocked() {
+        blockedUntil.clear();
+    }
+
+    private void checkCounters(RateLimit[] limits, JsonArray counters) {
+        RateLimit exceeded = null;
+        for (int i = 0; i < limits.length; i++) {
+            long count = counters.getLong(2 * i);
+            if (count > limits[i].getMaxRequests()) {
+                if (localPrecheck) {
+                    long ttlSeconds = counters.getLong(2 * i + 1);
+                    block(limits[i].getKey(), System.currentTimeMillis() + ttlSeconds * 1000);
+                }
+                if (exceeded == null) {
+                    exceeded = limits[i];
+                }
+            }
+        }
+        if (exceeded != null) {
+            Metrics.RATE_LIMIT_REJECTIONS_REDIS.increment();
+            throw new QueryLimitReachedException(exceeded.getError());
+        }
+    }
+
+    private RateLimit findLocallyBlocked(RateLimit[] limits) {
+        if (blockedUntil.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        for (RateLimit limit : limits) {
+            Long until = blockedUntil.get(limit.getKey());
+            if (until != null) {
+                if (until > now) {
+                    return limit;
+                }
+                blockedUntil.remove(limit.getKey());
+            }
+        }
+        return null;
+    }
+
+    private void block(String key, long until) {
+        if (blockedUntil.size() >= MAX_BLOCKED_KEYS) {
+            removeExpired(System.currentTimeMillis());
+            if (blockedUntil.size() >= MAX_BLOCKED_KEYS) {
+                // Redis still has the counters, we only lose the shortcut for this key
+                return;
+            }
+        }
+        blockedUntil.put(key, until);
+    }
+
+    private void removeExpired(long now) {
+        Iterator<Long> iterator = blockedUntil.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() <= now) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.vyng.vertex.resilience;
+
+import com.vyng.vertex.metrics.Metrics;
+import com.vyng.vertex.utils.ResponseEndHandlers;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * AIMD limit of the requests handled at once by one verticle instance.
+ * <p>
+ * Every response slower than the latency threshold, or failed with 503/504, cuts the limit by the backoff ratio.
+ * Other responses grow it by one per limit's worth of responses, only while the limit is actually used.
+ * Requests above the limit are shed at once with 503, before any body parsing or backend call.
+ * Not thread-safe, used on the event loop of the verticle.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("AdaptiveConcurrencyLimiter");
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMs) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+    }
+
+    public Handler<RoutingContext> handler() {
+        return rc -> {
+            if (inFlight >= (int) limit) {
+                Metrics.LOAD_SHED.increment();
+                rc.response().setStatusCode(503)
+                        .putHeader("Retry-After", "1")
+                        .putHeader("content-type", "text/plain; charset=utf-8")
+                        .end("Server is overloaded, retry later");
+                return;
+            }
+            inFlight++;
+            long start = System.nanoTime();
+            ResponseEndHandlers.add(rc, __ -> {
+                inFlight--;
+                onSample(System.nanoTime() - start, rc.response().getStatusCode());
+            });
+            rc.next();
+        };
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    private void onSample(long latencyNanos, int status) {
+        if (latencyNanos > latencyThresholdNanos || status == 503 || status == 504) {
+            int before = (int) limit;
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            if ((int) limit != before) {
+                LOGGER.fine("Concurrency limit decreased to " + (int) limit);
+            }
+        } else if (inFlight + 1 >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+}
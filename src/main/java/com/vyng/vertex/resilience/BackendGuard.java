@@ -0,0 +1,103 @@
+package com.vyng.vertex.resilience;
+
+import com.vyng.vertex.error.BackendUnavailableException;
+import com.vyng.vertex.error.DeadlineExceededException;
+import com.vyng.vertex.error.NotFoundException;
+import com.vyng.vertex.error.QueryLimitReachedException;
+import com.vyng.vertex.error.RemoteApiException;
+import com.vyng.vertex.metrics.Counter;
+import com.vyng.vertex.metrics.Metrics;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.util.function.Supplier;
+
+/**
+ * Calls of one backend through a {@link CircuitBreaker} and with a timeout: the smaller of the timeout
+ * of the backend and the time left until the deadline of the request.
+ * <p>
+ * Fails fast with {@link BackendUnavailableException} while the circuit is open and with
+ * {@link DeadlineExceededException} when there is no time left. A timed out call is not cancelled,
+ * its late result is dropped. Only the timeout of the backend counts as its failure: when the request
+ * runs out of time first, the caller fails at once but the breaker still gets the result of the call.
+ * Owned by one verticle instance, like the breaker.
+ */
+public class BackendGuard {
+
+    private final Vertx vertx;
+    private final String name;
+    private final long timeoutMs;
+    private final CircuitBreaker breaker;
+    private final Counter rejectedOpen;
+    private final Counter rejectedDeadline;
+    private final Counter timeouts;
+
+    public BackendGuard(Vertx vertx, String name, long timeoutMs) {
+        this.vertx = vertx;
+        this.name = name;
+        this.timeoutMs = timeoutMs;
+        this.breaker = CircuitBreaker.fromConfig(name);
+        this.rejectedOpen = Metrics.counter("vertex_backend_rejections_total", "backend=\"" + name + "\",reason=\"open\"");
+        this.rejectedDeadline = Metrics.counter("vertex_backend_rejections_total", "backend=\"" + name + "\",reason=\"deadline\"");
+        this.timeouts = Metrics.counter("vertex_backend_timeouts_total", "backend=\"" + name + "\"");
+    }
+
+    public <T> Future<T> call(Deadline deadline, Supplier<Future<T>> call) {
+        long timeout = Math.min(timeoutMs, deadline.remainingMs());
+        if (timeout <= 0) {
+            rejectedDeadline.increment();
+            return Future.failedFuture(new DeadlineExceededException("No time left to call " + name));
+        }
+        if (!breaker.allowRequest()) {
+            rejectedOpen.increment();
+            return Future.failedFuture(new BackendUnavailableException(name + " is unavailable"));
+        }
+
+        Promise<T> result = Promise.promise();
+        // Only the backend's own timeout counts against it, the breaker keeps waiting past the request deadline
+        long backendTimerId = vertx.setTimer(timeoutMs, __ -> {
+            timeouts.increment();
+            breaker.onFailure();
+            result.tryFail(new DeadlineExceededException(name + " did not answer in " + timeoutMs + " ms"));
+        });
+        long deadlineTimerId = timeout < timeoutMs
+                ? vertx.setTimer(timeout, __ -> {
+                    rejectedDeadline.increment();
+                    result.tryFail(new DeadlineExceededException("Deadline of the request passed while calling " + name));
+                })
+                : -1;
+        call.get().setHandler(ar -> {
+            if (deadlineTimerId != -1) {
+                vertx.cancelTimer(deadlineTimerId);
+            }
+            if (!vertx.cancelTimer(backendTimerId)) {
+                // Already counted as a timeout
+                return;
+            }
+            if (ar.succeeded() || !isBackendFailure(ar.cause())) {
+                breaker.onSuccess();
+            } else {
+                breaker.onFailure();
+            }
+            if (!result.future().isComplete()) {
+                result.handle(ar);
+            }
+        });
+        return result.future();
+    }
+
+    public CircuitBreaker.State getState() {
+        return breaker.getState();
+    }
+
+    /**
+     * Answers about the data, like a missing user or an exceeded limit, show that the backend works
+     */
+    private static boolean isBackendFailure(Throwable cause) {
+        if (cause instanceof NotFoundException || cause instanceof QueryLimitReachedException) {
+            return false;
+        }
+        return !(cause instanceof RemoteApiException) || ((RemoteApiException) cause).getStatusCode() >= 500;
+    }
+}
@@ -0,0 +1,77 @@
+package com.vyng.vertex.resilience;
+
+import com.vyng.vertex.logging.Log;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Pings one backend every period and keeps the last result, so readiness checks don't call the backend.
+ * Unhealthy until the first ping answers. A ping still unanswered when the next one is due counts as a failure.
+ * Not thread-safe, owned by one verticle instance and used on its event loop.
+ */
+public class BackendProbe {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("BackendProbe");
+
+    private final Vertx vertx;
+    private final String name;
+    private final Supplier<Future<Void>> ping;
+    private final long timerId;
+
+    private boolean healthy;
+    private boolean pinging;
+
+    public BackendProbe(Vertx vertx, String name, long periodMs, Supplier<Future<Void>> ping) {
+        this.vertx = vertx;
+        this.name = name;
+        this.ping = ping;
+        this.timerId = vertx.setPeriodic(periodMs, __ -> check());
+        check();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public void close() {
+        vertx.cancelTimer(timerId);
+    }
+
+    private void check() {
+        if (pinging) {
+            update(false, "no answer to the last ping");
+            return;
+        }
+        pinging = true;
+        Future<Void> answer;
+        try {
+            answer = ping.get();
+        } catch (RuntimeException ex) {
+            pinging = false;
+            update(false, ex);
+            return;
+        }
+        answer.setHandler(ar -> {
+            pinging = false;
+            update(ar.succeeded(), ar.cause());
+        });
+    }
+
+    private void update(boolean nowHealthy, Object cause) {
+        if (nowHealthy != healthy) {
+            if (nowHealthy) {
+                Log.info(LOGGER, "backend_ready", "backend", name);
+            } else {
+                Log.warning(LOGGER, "backend_not_ready", "backend", name, "cause", cause);
+            }
+        }
+        healthy = nowHealthy;
+    }
+}
@@ -0,0 +1,144 @@
+package com.vyng.vertex.resilience;
+
+import com.vyng.vertex.metrics.Counter;
+import com.vyng.vertex.metrics.Metrics;
+import com.vyng.vertex.utils.Utils;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker over the results of the last calls to a backend.
+ * <p>
+ * Opens when at least minCalls of the window are known and the share of failures among them reaches failureRatio.
+ * While open, calls are rejected for openMs. Then one trial call is let through: its success closes the circuit,
+ * its failure opens it again.
+ * Not thread-safe, meant to be owned by one verticle instance and used on its event loop.
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("CircuitBreaker");
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final String name;
+    private final int minCalls;
+    private final double failureRatio;
+    private final long openMs;
+    private final Counter opened;
+    private final LongSupplier clock;
+
+    // Ring of the last results, true for failures
+    private final boolean[] window;
+    private int position;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int windowSize, int minCalls, double failureRatio, long openMs) {
+        this(name, windowSize, minCalls, failureRatio, openMs, System::currentTimeMillis);
+    }
+
+    /**
+     * With the clock giving the current time in milliseconds, for tests
+     */
+    CircuitBreaker(String name, int windowSize, int minCalls, double failureRatio, long openMs, LongSupplier clock) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minCalls = minCalls;
+        this.failureRatio = failureRatio;
+        this.openMs = openMs;
+        this.opened = Metrics.counter("vertex_circuit_breaker_opened_total", "backend=\"" + name + "\"");
+        this.clock = clock;
+    }
+
+    /**
+     * Reads BREAKER_WINDOW, BREAKER_MIN_CALLS, BREAKER_FAILURE_RATIO and BREAKER_OPEN_MS, same for all the backends
+     */
+    public static CircuitBreaker fromConfig(String name) {
+        return new CircuitBreaker(name,
+                Integer.parseInt(Utils.getParam("BREAKER_WINDOW", "50")),
+                Integer.parseInt(Utils.getParam("BREAKER_MIN_CALLS", "20")),
+                Double.parseDouble(Utils.getParam("BREAKER_FAILURE_RATIO", "0.5")),
+                Long.parseLong(Utils.getParam("BREAKER_OPEN_MS", "5000")));
+    }
+
+    public boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openMs) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (trialInFlight) {
+            return false;
+        }
+        trialInFlight = true;
+        return true;
+    }
+
+    public void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            LOGGER.info("Circuit of " + name + " is closed again");
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    public void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        record(true);
+        if (recorded >= minCalls && failures >= failureRatio * recorded) {
+            open();
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == window.length) {
+            if (window[position]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[position] = failed;
+        if (failed) {
+            failures++;
+        }
+        position = (position + 1) % window.length;
+    }
+
+    private void open() {
+        LOGGER.warning("Circuit of " + name + " is open, failures: " + failures + " of " + recorded);
+        opened.increment();
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        Arrays.fill(window, false);
+        position = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
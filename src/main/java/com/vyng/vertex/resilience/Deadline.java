@@ -0,0 +1,56 @@
+package com.vyng.vertex.resilience;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a request has to be answered. Set per route and passed down to the backend calls,
+ * which get only the time left of it.
+ */
+public final class Deadline {
+
+    private static final String CONTEXT_KEY = "deadline";
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /**
+     * Route handler putting a deadline of the given budget into the context, see {@link #of(RoutingContext)}
+     */
+    public static Handler<RoutingContext> handler(long millis) {
+        return rc -> {
+            rc.put(CONTEXT_KEY, after(millis));
+            rc.next();
+        };
+    }
+
+    public static Deadline of(RoutingContext rc) {
+        Deadline deadline = rc.get(CONTEXT_KEY);
+        return deadline == null ? NONE : deadline;
+    }
+
+    public long remainingMs() {
+        if (this == NONE) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return remainingMs() <= 0;
+    }
+}
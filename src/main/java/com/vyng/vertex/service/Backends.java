@@ -0,0 +1,53 @@
+package com.vyng.vertex.service;
+
+import com.vyng.vertex.utils.Utils;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+
+import java.net.URI;
+import java.util.logging.Logger;
+
+/**
+ * Creates the clients of the backends from the config. Overridden to run the server against stand-ins,
+ * e.g. by benchmarks and load tests.
+ * <p>
+ * Mongo clients are shared by name: all the verticle instances of the process use one connection pool per database.
+ * Redis clients complete their calls on the context they were created on, so every verticle instance gets its own.
+ */
+public class Backends {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("Backends");
+    private static final String USERS_DATA_SOURCE = "users_data_source";
+    private static final String HEROKU_DATA_SOURCE = "heroku_data_source";
+
+    public MongoClient usersMongo(Vertx vertx) {
+        String uri = Utils.getParam("MONGODB_URI");
+        LOGGER.fine("Initializing Mongo client. Uri found: " + !uri.isEmpty());
+        JsonObject mongoconfig = new JsonObject().put("connection_string", uri);
+        return MongoClient.createShared(vertx, mongoconfig, USERS_DATA_SOURCE);
+    }
+
+    public MongoClient herokuMongo(Vertx vertx) {
+        String uri = Utils.getParam("MONGO_DB_HEROKU");
+        LOGGER.fine("Initializing Mongo Heroku client. Uri found: " + !uri.isEmpty());
+        JsonObject mongoconfig = new JsonObject().put("connection_string", uri);
+        return MongoClient.createShared(vertx, mongoconfig, HEROKU_DATA_SOURCE);
+    }
+
+    public RedisClient redis(Vertx vertx) {
+        URI redis = URI.create(Utils.getParam("REDISCLOUD_URL"));
+        LOGGER.fine("Initializing Redis client. Uri found: " + !redis.getHost().isEmpty());
+        RedisOptions redisOptions = new RedisOptions()
+                .setAuth(redis.getUserInfo().split(":", 2)[1])
+                .setHost(redis.getHost())
+                .setPort(redis.getPort());
+        return RedisClient.create(vertx, redisOptions);
+    }
+
+    public UserRemovalApi removalApi(Vertx vertx) {
+        return new HttpUserRemovalApi(vertx);
+    }
+}
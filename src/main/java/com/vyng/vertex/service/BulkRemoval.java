@@ -0,0 +1,70 @@
+package com.vyng.vertex.service;
+
+import com.vyng.vertex.utils.Errors;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Removes the users with at most the given number of removals in flight.
+ * <p>
+ * Every result is passed to the resultHandler as soon as it arrives, as {"phone", "code"} plus "error" for
+ * failures. A new removal starts only after the future returned by the handler completes.
+ * The returned future fails only if the handler fails, e.g. the client went away.
+ * Runs on the event loop only, so no synchronization of the counters is needed.
+ */
+public class BulkRemoval {
+
+    private final List<String> phones;
+    private final int concurrency;
+    private final Function<String, Future<Void>> removal;
+    private final Function<JsonObject, Future<Void>> resultHandler;
+    private final Promise<Void> done = Promise.promise();
+
+    private int next;
+    private int inFlight;
+
+    public BulkRemoval(List<String> phones, int concurrency, Function<String, Future<Void>> removal,
+                       Function<JsonObject, Future<Void>> resultHandler) {
+        this.phones = phones;
+        this.concurrency = concurrency;
+        this.removal = removal;
+        this.resultHandler = resultHandler;
+    }
+
+    public Future<Void> start() {
+        if (phones.isEmpty()) {
+            done.complete();
+        }
+        startNext();
+        return done.future();
+    }
+
+    private void startNext() {
+        while (inFlight < concurrency && next < phones.size() && !done.future().isComplete()) {
+            String phone = phones.get(next++);
+            inFlight++;
+            removal.apply(phone).setHandler(ar -> {
+                JsonObject result = new JsonObject().put("phone", phone);
+                if (ar.succeeded()) {
+                    result.put("code", 204);
+                } else {
+                    result.put("code", Errors.status(ar.cause())).put("error", String.valueOf(ar.cause().getMessage()));
+                }
+                resultHandler.apply(result).setHandler(written -> {
+                    inFlight--;
+                    if (written.failed()) {
+                        done.tryFail(written.cause());
+                    } else if (next >= phones.size() && inFlight == 0) {
+                        done.tryComplete();
+                    } else {
+                        startNext();
+                    }
+                });
+            });
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.vyng.vertex.service;
+
+import com.vyng.vertex.config.AppConfig;
+import com.vyng.vertex.error.BackendUnavailableException;
+import com.vyng.vertex.logging.Log;
+import com.vyng.vertex.model.UserInfo;
+import com.vyng.vertex.ratelimit.RateLimit;
+import com.vyng.vertex.ratelimit.RateLimiter;
+import com.vyng.vertex.resilience.BackendGuard;
+import com.vyng.vertex.resilience.Deadline;
+import com.vyng.vertex.utils.UserInfoWriter;
+import com.vyng.vertex.utils.Utils;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.redis.RedisClient;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Exports the users created in a time range as newline-delimited JSON, read with a Mongo cursor
+ * and written as fast as the client takes it, so memory use doesn't depend on the number of users.
+ * <p>
+ * Users are in the order of (createdAt, _id). Every EXPORT_CURSOR_EVERY users a {"cursor": "..."} line is written:
+ * passing the last one seen to a new export resumes after the user written before it.
+ * The last line is {"done": true, "count": n}, a stream without it was cut short.
+ */
+public class ExportUsersService {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("ExportUsersService");
+
+    private static final JsonObject USER_FIELDS = new JsonObject().put("_id", 1).put("phoneNumber", 1).put("createdAt", 1);
+    private static final JsonObject ORDER = new JsonObject().put("createdAt", 1).put("_id", 1);
+    private static final Buffer NEW_LINE = Buffer.buffer("\n");
+
+    private final MongoClient mongoClient;
+    private final RateLimiter rateLimiter;
+    private final BackendGuard redisGuard;
+    private final String keyExportCount;
+    private final int maxConcurrent;
+    private final int batchSize;
+    private final int chunkBytes;
+    private final int cursorEvery;
+
+    private int running;
+
+    public ExportUsersService(Vertx vertx, MongoClient mongoClient, RedisClient redisClient) {
+        this.mongoClient = mongoClient;
+        this.rateLimiter = new RateLimiter(redisClient,
+                Integer.parseInt(Utils.getParam("EXPORT_RATE_LIMIT_WINDOW_SECONDS", "3600")), true);
+        this.redisGuard = new BackendGuard(vertx, "redis", Long.parseLong(Utils.getParam("REDIS_TIMEOUT_MS", "500")));
+        this.keyExportCount = AppConfig.current().getEnv() + ":export:users:";
+        this.maxConcurrent = Integer.parseInt(Utils.getParam("EXPORT_MAX_CONCURRENT", "2"));
+        this.batchSize = Integer.parseInt(Utils.getParam("EXPORT_BATCH_SIZE", "1000"));
+        this.chunkBytes = Integer.parseInt(Utils.getParam("EXPORT_CHUNK_BYTES", "16384"));
+        this.cursorEvery = Integer.parseInt(Utils.getParam("EXPORT_CURSOR_EVERY", "1000"));
+        vertx.eventBus().consumer(AppConfig.CHANGED_ADDRESS, __ -> rateLimiter.clearBlocked());
+    }
+
+    /**
+     * Charged against a bucket of the user separate from the user info limits: EXPORT_MAX_REQUESTS exports per
+     * EXPORT_RATE_LIMIT_WINDOW_SECONDS. At most EXPORT_MAX_CONCURRENT exports run on one instance.
+     * <p>
+     * Data is passed to the sink in chunks of whole lines, the next chunk is read only after the future returned
+     * by the sink completes.
+     *
+     * @param cursor null to start from the beginning of the range
+     * @return number of exported users, failed with IllegalArgumentException for an invalid cursor
+     */
+    public Future<Long> exportUsers(Instant from, Instant to, String cursor, String user,
+                                    Function<Buffer, Future<Void>> sink) {
+        JsonObject query;
+        try {
+            query = rangeQuery(from, to, cursor == null ? null : decodeCursor(cursor));
+        } catch (IllegalArgumentException ex) {
+            return Future.failedFuture(new IllegalArgumentException("Invalid cursor"));
+        }
+        if (running >= maxConcurrent) {
+            return Future.failedFuture(new BackendUnavailableException("Too many exports running, try again later"));
+        }
+        RateLimit limit = new RateLimit(keyExportCount + user, AppConfig.current().getExportMaxRequests(),
+                "Max hourly user export count reached");
+
+        running++;
+        return redisGuard.call(Deadline.none(), () -> rateLimiter.acquire(limit))
+                .compose(__ -> {
+                    Log.info(LOGGER, "export_users", "from", from, "to", to, "resumed", cursor != null, "user", user);
+                    FindOptions options = new FindOptions().setFields(USER_FIELDS).setSort(ORDER).setBatchSize(batchSize);
+                    return new Export(mongoClient.findBatchWithOptions("users", query, options), sink).start();
+                })
+                .map(count -> {
+                    running--;
+                    return count;
+                })
+                .recover(cause -> {
+                    running--;
+                    return Future.failedFuture(cause);
+                });
+    }
+
+    private static JsonObject rangeQuery(Instant from, Instant to, JsonObject after) {
+        JsonObject query = new JsonObject().put("createdAt", new JsonObject()
+                .put("$gte", date(from.toString()))
+                .put("$lt", date(to.toString())));
+        if (after != null) {
+            String createdAt = after.getString("c");
+            String id = after.getString("i");
+            if (createdAt == null || id == null || !Utils.isObjectId(id)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            query.put("$or", new JsonArray()
+                    .add(new JsonObject().put("createdAt", new JsonObject().put("$gt", date(createdAt))))
+                    .add(new JsonObject()
+                            .put("createdAt", date(createdAt))
+                            .put("_id", new JsonObject().put("$gt", new JsonObject().put("$oid", id)))));
+        }
+        return query;
+    }
+
+    private static JsonObject date(String iso) {
+        return new JsonObject().put("$date", iso);
+    }
+
+    static String encodeCursor(UserInfo user) {
+        String json = new JsonObject().put("c", user.getCreatedAt()).put("i", user.getId()).encode();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static JsonObject decodeCursor(String cursor) {
+        try {
+            return new JsonObject(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid cursor", ex);
+        }
+    }
+
+    // One export, runs on the event loop only
+    private class Export {
+
+        private final ReadStream<JsonObject> users;
+        private final Function<Buffer, Future<Void>> sink;
+        private final Promise<Long> done = Promise.promise();
+
+        private Buffer chunk;
+        private long count;
+
+        private Export(ReadStream<JsonObject> users, Function<Buffer, Future<Void>> sink) {
+            this.users = users;
+            this.sink = sink;
+        }
+
+        private Future<Long> start() {
+            chunk = Buffer.buffer(chunkBytes + 256);
+            users.exceptionHandler(cause -> {
+                Log.warning(LOGGER, "export_users_failed", "exported", count, "cause", cause);
+                done.tryFail(cause);
+            });
+            users.endHandler(__ -> {
+                chunk.appendString(new JsonObject().put("done", true).put("count", count).encode()).appendBuffer(NEW_LINE);
+                sink.apply(chunk).setHandler(written -> {
+                    if (written.succeeded()) {
+                        done.tryComplete(count);
+                    } else {
+                        done.tryFail(written.cause());
+                    }
+                });
+            });
+            users.handler(this::append);
+            return done.future();
+        }
+
+        private void append(JsonObject document) {
+            UserInfo user = UserInfo.fromDocument(null, document);
+            chunk.appendBuffer(UserInfoWriter.write(user, false)).appendBuffer(NEW_LINE);
+            count++;
+            if (count % cursorEvery == 0) {
+                chunk.appendString(new JsonObject().put("cursor", encodeCursor(user)).encode()).appendBuffer(NEW_LINE);
+            }
+            if (chunk.length() < chunkBytes) {
+                return;
+            }
+
+            // Stop reading the cursor until the client took the chunk
+            Buffer full = chunk;
+            chunk = Buffer.buffer(chunkBytes + 256);
+            users.pause();
+            sink.apply(full).setHandler(written -> {
+                if (written.succeeded()) {
+                    users.resume();
+                } else {
+                    // Removing the handler closes the Mongo cursor
+                    users.handler(null);
+                    done.tryFail(written.cause());
+                }
+            });
+        }
+    }
+}
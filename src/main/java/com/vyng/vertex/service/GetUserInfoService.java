@@ -1,93 +1,232 @@
 package com.vyng.vertex.service;
 
 import com.mongodb.lang.NonNull;
-import com.vyng.vertex.error.NotFoundException;
-import com.vyng.vertex.error.QueryLimitReachedException;
+import com.vyng.vertex.cache.UserInfoCache;
+import com.vyng.vertex.config.AppConfig;
+import com.vyng.vertex.logging.Log;
+import com.vyng.vertex.metrics.Metrics;
+import com.vyng.vertex.model.UserInfo;
+import com.vyng.vertex.ratelimit.RateLimit;
+import com.vyng.vertex.ratelimit.RateLimiter;
+import com.vyng.vertex.resilience.BackendGuard;
+import com.vyng.vertex.resilience.Deadline;
+import com.vyng.vertex.utils.Errors;
+import com.vyng.vertex.utils.UserInfoWriter;
 import com.vyng.vertex.utils.Utils;
-import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.FindOptions;
 import io.vertx.ext.mongo.MongoClient;
 import io.vertx.redis.RedisClient;
-import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
-public class GetUserInfoService {
+public class GetUserInfoService implements UserInfoOperations {
 
     private static final Logger LOGGER = java.util.logging.Logger.getLogger("GetUserInfoService");
 
-    private static final int MAX_USER_REQUESTS = Integer.parseInt(Utils.getParam("MAX_USER_REQUESTS"));
-    private static final int MAX_TOTAL_REQUESTS = Integer.parseInt(Utils.getParam("MAX_TOTAL_REQUESTS"));
     private static final int MONGO_ID_LENGTH = 24;
-    private static final String KEY_GET_TOTAL_COUNT = Utils.getParam("ENV", "unknown") + ":get:user:total";
-    private static final String KEY_GET_USER_COUNT = Utils.getParam("ENV", "unknown") + ":get:user:";
     private static final int LIMITATION_TIME = (int) TimeUnit.HOURS.toSeconds(12);
 
+    private static final JsonObject USER_FIELDS = new JsonObject().put("_id", 1).put("phoneNumber", 1).put("createdAt", 1);
+
+    // Read from the config of the verticle creating the service, not on class loading.
+    // The limits themselves can change while running, they are read from AppConfig on every request
+    private final String keyGetUserCount;
+    private final String keyTotalCount;
+    private final int batchChunkSize;
+
     @NonNull
     private final MongoClient mongoClient;
     @NonNull
-    private final RedisClient redisClient;
+    private final RateLimiter rateLimiter;
+    @NonNull
+    private final UserInfoCache cache;
+    @NonNull
+    private final BackendGuard mongoGuard;
+    @NonNull
+    private final BackendGuard redisGuard;
 
-    public GetUserInfoService(MongoClient mongoClient, RedisClient redisClient) {
+    public GetUserInfoService(Vertx vertx, MongoClient mongoClient, RedisClient redisClient) {
         this.mongoClient = mongoClient;
-        this.redisClient = redisClient;
+        String env = AppConfig.current().getEnv();
+        this.keyGetUserCount = env + ":get:user:";
+        this.keyTotalCount = env + ":get:user:total";
+        this.batchChunkSize = Integer.parseInt(Utils.getParam("USER_BATCH_CHUNK_SIZE", "100"));
+        this.rateLimiter = new RateLimiter(redisClient, LIMITATION_TIME,
+                Boolean.parseBoolean(Utils.getParam("RATE_LIMIT_LOCAL_PRECHECK", "true")));
+        this.cache = new UserInfoCache(vertx, redisClient);
+        this.mongoGuard = new BackendGuard(vertx, "mongo_users", Long.parseLong(Utils.getParam("MONGO_TIMEOUT_MS", "2000")));
+        this.redisGuard = new BackendGuard(vertx, "redis", Long.parseLong(Utils.getParam("REDIS_TIMEOUT_MS", "500")));
+        // Keys blocked under the old limits may be allowed by the new ones
+        vertx.eventBus().consumer(AppConfig.CHANGED_ADDRESS, __ -> rateLimiter.clearBlocked());
     }
 
-    public Future<JsonObject> getUserInfo(String id, String remoteIp) {
-        LOGGER.info("Getting user info for: " + id);
-        if (id.length() != MONGO_ID_LENGTH) {
-            return Future.failedFuture("Unexpected id length");
+    /**
+     * Backend calls get only the time left until the deadline, see {@link BackendGuard}
+     */
+    @Override
+    public Future<UserInfo> getUserInfo(String requestedId, String remoteIp, Deadline deadline) {
+        Log.fine(LOGGER, "get_user_info", "id", requestedId);
+        String error = validateId(requestedId);
+        if (error != null) {
+            return Future.failedFuture(error);
         }
+        String id = normalizeId(requestedId);
 
-        // Add rate limit on total queries to the get user resource
-        Future<Boolean> totalSuccess =
-                getTotalRequestLimitFuture(KEY_GET_TOTAL_COUNT, MAX_TOTAL_REQUESTS, "Max daily total info request count reached");
-
-        // Add rate limit on queries to the get user resource from one ip
-        Future<Boolean> userSuccess =
-                getTotalRequestLimitFuture(KEY_GET_USER_COUNT + remoteIp, MAX_USER_REQUESTS, "Max daily user info request count reached");
-
-        return CompositeFuture.all(totalSuccess, userSuccess)
-                .compose(__ -> getUserById(id))
-                .map(entry -> flattenJson(id, entry));
+        // Every caller is charged, concurrent lookups of the same id are coalesced only behind the limits
+        return redisGuard.call(deadline, () -> rateLimiter.acquire(limits(remoteIp)))
+                .compose(__ -> cache.get(id, () -> getUserById(id, deadline).map(entry -> UserInfo.fromDocument(id, entry))));
     }
 
-    @NotNull
-    private JsonObject flattenJson(String id, JsonObject entry) {
-        if (entry == null) {
-            throw new NotFoundException("Object with the id was not found: " + id);
+    /**
+     * Resolves a batch of ids with chunked $in queries. The batch is charged against the rate limits once.
+     * <p>
+     * Every chunk is passed to the chunkHandler in the order of the ids as soon as it is resolved, the next chunk
+     * is queried only after the future returned by the handler completes. Ids that are invalid or not found
+     * don't fail the batch, they are reported inline as {"_id", "error", "code"} objects. Ids are reported
+     * in lowercase, duplicate ids are resolved once. Elements are passed already encoded as compact json.
+     */
+    @Override
+    public Future<Void> getUsersInfo(List<String> ids, String remoteIp, Deadline deadline,
+                                     Function<List<Buffer>, Future<Void>> chunkHandler) {
+        Log.fine(LOGGER, "get_users_info", "ids", ids.size());
+        LinkedHashSet<String> uniqueIds = new LinkedHashSet<>();
+        for (String id : ids) {
+            uniqueIds.add(normalizeId(id));
         }
+        return redisGuard.call(deadline, () -> rateLimiter.acquire(limits(remoteIp)))
+                .compose(__ -> resolveChunks(new ArrayList<>(uniqueIds), 0, deadline, chunkHandler));
+    }
 
-        String id1 = entry.getJsonObject("_id").getString("$oid");
-        entry.put("_id", id1);
-        String createdAt = entry.getJsonObject("createdAt").getString("$date");
-        entry.put("createdAt", createdAt);
-        return entry;
+    /**
+     * Rate limits on total queries to the get user resource and on queries from one ip, checked in one round trip
+     */
+    private RateLimit[] limits(String remoteIp) {
+        AppConfig config = AppConfig.current();
+        return new RateLimit[]{
+                new RateLimit(keyTotalCount, config.getMaxTotalRequests(), "Max daily total info request count reached"),
+                new RateLimit(keyGetUserCount + remoteIp, config.getMaxUserRequests(), "Max daily user info request count reached")
+        };
     }
 
-    private Future<JsonObject> getUserById(String id) {
-        Promise<JsonObject> mongoPromise = Promise.promise();
-        mongoClient.findOne("users",
-                new JsonObject().put("_id", new JsonObject().put("$oid", id)),
-                new JsonObject().put("_id", 1).put("phoneNumber", 1).put("createdAt", 1), mongoPromise);
-        return mongoPromise.future();
+    private Future<Void> resolveChunks(List<String> ids, int from, Deadline deadline,
+                                       Function<List<Buffer>, Future<Void>> chunkHandler) {
+        if (from >= ids.size()) {
+            return Future.succeededFuture();
+        }
+        int to = Math.min(from + batchChunkSize, ids.size());
+        return resolveChunk(ids.subList(from, to), deadline)
+                .compose(chunkHandler)
+                .compose(__ -> resolveChunks(ids, to, deadline, chunkHandler));
     }
 
-    private Future<Boolean> getTotalRequestLimitFuture(String key, int maxRequests, String error) {
-        Promise<Long> incrementedCount = Promise.promise();
-        redisClient.incr(key, incrementedCount);
-        return incrementedCount.future().map(count -> {
-            if (count == 1) {
-                redisClient.expire(key, LIMITATION_TIME, __ -> {
-                });
+    private Future<List<Buffer>> resolveChunk(List<String> ids, Deadline deadline) {
+        Buffer[] results = new Buffer[ids.size()];
+        Map<String, Integer> missing = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            String error = validateId(id);
+            if (error != null) {
+                results[i] = batchError(id, 400, error);
+                continue;
             }
-            if (count > maxRequests) {
-                throw new QueryLimitReachedException(error);
+            Future<UserInfo> cached = cache.getIfPresent(id);
+            if (cached == null) {
+                missing.put(id, i);
+            } else if (cached.succeeded()) {
+                results[i] = UserInfoWriter.write(cached.result(), false);
+            } else {
+                results[i] = batchError(id, 404, cached.cause().getMessage());
             }
-            return true;
+        }
+        if (missing.isEmpty()) {
+            return Future.succeededFuture(List.of(results));
+        }
+
+        return getUsersByIds(missing.keySet(), deadline).map(found -> {
+            for (JsonObject entry : found) {
+                String id = entry.getJsonObject("_id").getString("$oid");
+                Integer index = missing.remove(id);
+                if (index != null) {
+                    UserInfo user = UserInfo.fromDocument(id, entry);
+                    cache.put(id, user);
+                    results[index] = UserInfoWriter.write(user, false);
+                }
+            }
+            missing.forEach((id, index) -> {
+                cache.putNotFound(id);
+                results[index] = batchError(id, 404, "Object with the id was not found: " + id);
+            });
+            return List.of(results);
+        }).otherwise(cause -> {
+            Log.warning(LOGGER, "users_chunk_failed", "ids", missing.size(), "cause", cause);
+            String message = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+            int code = Errors.backendStatus(cause);
+            missing.forEach((id, index) -> results[index] = batchError(id, code, message));
+            return List.of(results);
+        });
+    }
+
+    private static Buffer batchError(String id, int code, String error) {
+        return new JsonObject()
+                .put("_id", id)
+                .put("error", error)
+                .put("code", code)
+                .toBuffer();
+    }
+
+    private static String validateId(String id) {
+        if (id.length() != MONGO_ID_LENGTH) {
+            return "Unexpected id length";
+        }
+        if (!Utils.isObjectId(id)) {
+            return "Unexpected id format";
+        }
+        return null;
+    }
+
+    /**
+     * Validation accepts uppercase hex, Mongo returns ids in lowercase. The lowercase id is the cache key
+     * and is matched against the results, so "ABC..." and "abc..." are the same user
+     */
+    private static String normalizeId(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+
+    private Future<JsonObject> getUserById(String id, Deadline deadline) {
+        return mongoGuard.call(deadline, () -> {
+            Promise<JsonObject> mongoPromise = Promise.promise();
+            mongoClient.findOne("users",
+                    new JsonObject().put("_id", new JsonObject().put("$oid", id)),
+                    USER_FIELDS, Metrics.timed(Metrics.MONGO_FIND_USER, mongoPromise));
+            return mongoPromise.future();
+        });
+    }
+
+    private Future<List<JsonObject>> getUsersByIds(Iterable<String> ids, Deadline deadline) {
+        JsonArray objectIds = new JsonArray();
+        for (String id : ids) {
+            objectIds.add(new JsonObject().put("$oid", id));
+        }
+        return mongoGuard.call(deadline, () -> {
+            Promise<List<JsonObject>> mongoPromise = Promise.promise();
+            mongoClient.findWithOptions("users",
+                    new JsonObject().put("_id", new JsonObject().put("$in", objectIds)),
+                    new FindOptions().setFields(USER_FIELDS), Metrics.timed(Metrics.MONGO_FIND_USERS, mongoPromise));
+            return mongoPromise.future();
         });
     }
 }
@@ -0,0 +1,63 @@
+package com.vyng.vertex.service;
+
+import com.vyng.vertex.config.AppConfig;
+import com.vyng.vertex.error.RemoteApiException;
+import com.vyng.vertex.metrics.Metrics;
+import com.vyng.vertex.utils.Utils;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+
+/**
+ * Client of the backend API that removes users. One instance per verticle: connections are kept alive
+ * and reused between calls, callbacks run on the event loop of the verticle.
+ */
+public class HttpUserRemovalApi implements UserRemovalApi {
+
+    private final WebClient client;
+    private final long requestTimeoutMs;
+
+    /**
+     * Reads the pool settings from the config of the verticle creating the client
+     */
+    public HttpUserRemovalApi(Vertx vertx) {
+        WebClientOptions options = new WebClientOptions()
+                .setKeepAlive(true)
+                // Max connections per host, requests above it wait in the queue
+                .setMaxPoolSize(Integer.parseInt(Utils.getParam("REMOVE_USER_API_MAX_CONNECTIONS", "8")))
+                .setMaxWaitQueueSize(Integer.parseInt(Utils.getParam("REMOVE_USER_API_MAX_WAIT_QUEUE", "256")))
+                .setConnectTimeout(Integer.parseInt(Utils.getParam("REMOVE_USER_API_CONNECT_TIMEOUT_MS", "5000")))
+                .setIdleTimeout(Integer.parseInt(Utils.getParam("REMOVE_USER_API_IDLE_TIMEOUT_SECONDS", "60")));
+        this.requestTimeoutMs = Long.parseLong(Utils.getParam("REMOVE_USER_API_TIMEOUT_MS", "10000"));
+        this.client = WebClient.create(vertx, options);
+    }
+
+    @Override
+    public Future<Void> remove(String phone, String server) {
+        // Endpoints and token can change while running. The phone is validated by RemoveUserService,
+        // it is digits with an optional '+' and needs no escaping in the path
+        AppConfig config = AppConfig.current();
+        String endpoint = "prod".equals(server) ? config.getRemoveUserProdEndpoint() : config.getRemoveUserDevEndpoint();
+        Promise<Void> result = Promise.promise();
+        client.deleteAbs(endpoint + phone)
+                .putHeader("x-auth-token", config.getDeleteToken())
+                .timeout(requestTimeoutMs)
+                .send(Metrics.timed(Metrics.REMOVAL_API, ar -> {
+                    if (ar.failed()) {
+                        result.fail(ar.cause());
+                    } else if (ar.result().statusCode() / 100 == 2) {
+                        result.complete();
+                    } else {
+                        result.fail(new RemoteApiException(ar.result().statusCode(), "Failed to delete the user: " + phone));
+                    }
+                }));
+        return result.future();
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+}
@@ -1,83 +1,168 @@
 package com.vyng.vertex.service;
 
+import com.vyng.vertex.audit.RemovalAuditLog;
+import com.vyng.vertex.cache.PhoneWhitelist;
+import com.vyng.vertex.cache.UserInfoCache;
+import com.vyng.vertex.error.BackendUnavailableException;
+import com.vyng.vertex.error.RemoteApiException;
+import com.vyng.vertex.error.ValidationException;
+import com.vyng.vertex.logging.Log;
+import com.vyng.vertex.metrics.Metrics;
+import com.vyng.vertex.resilience.BackendGuard;
+import com.vyng.vertex.resilience.Deadline;
 import com.vyng.vertex.utils.Errors;
 import com.vyng.vertex.utils.Utils;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.mongo.MongoClient;
-import io.vertx.ext.web.RoutingContext;
-import okhttp3.*;
 
-import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
 
-public class RemoveUserService {
+public class RemoveUserService implements UserRemovalOperations {
 
     private final static java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger("VertxHttpServer");
-    private static final String REMOVE_USER_DEV_ENDPOINT = Utils.getParam("REMOVE_USER_DEV_ENDPOINT");
-    private static final String REMOVE_USER_PROD_ENDPOINT = Utils.getParam("REMOVE_USER_PROD_ENDPOINT");
-    private static final String DELETE_TOKEN_ENV = "DELETE_TOKEN";
 
+    private final Vertx vertx;
+    private final int bulkConcurrency;
     private final MongoClient mongoClient;
+    private final UserRemovalApi removalApi;
+    private final BackendGuard removalApiGuard;
+    private final BackendGuard mongoGuard;
+    private final RemovalAuditLog auditLog;
+    // Null when the whitelist check is off
+    private final PhoneWhitelist whitelist;
 
-    public RemoveUserService(MongoClient mongoClient) {
+    public RemoveUserService(Vertx vertx, MongoClient mongoClient, UserRemovalApi removalApi) {
+        this.vertx = vertx;
+        this.bulkConcurrency = bulkConcurrency();
         this.mongoClient = mongoClient;
+        this.removalApi = removalApi;
+        this.removalApiGuard = new BackendGuard(vertx, "removal_api",
+                Long.parseLong(Utils.getParam("REMOVE_USER_API_TIMEOUT_MS", "10000")));
+        this.mongoGuard = new BackendGuard(vertx, "mongo_heroku", Long.parseLong(Utils.getParam("MONGO_TIMEOUT_MS", "2000")));
+        this.auditLog = new RemovalAuditLog(vertx, mongoClient);
+        this.whitelist = Boolean.parseBoolean(Utils.getParam("REMOVE_USER_WHITELIST_ENABLED", "true"))
+                ? new PhoneWhitelist(vertx, mongoClient) : null;
     }
 
-    // This is the first type of serving routing, that passes routingContext inside.
-    // That was a bad experiment, don't do it in prod. GetUserInfoService has better example with Futures
-    public void deleteUser(String phone, String server, RoutingContext routingContext) {
-        LOGGER.info("Deleting a user: " + phone + " on a server: " + server);
-        removeUserThroughApi(phone, server, routingContext);
+    /**
+     * REMOVE_USER_BULK_CONCURRENCY from the config of the calling verticle, used by the event bus client too
+     */
+    public static int bulkConcurrency() {
+        int concurrency = Integer.parseInt(Utils.getParam("REMOVE_USER_BULK_CONCURRENCY", "4"));
+        if (concurrency < 1) {
+            throw new IllegalStateException("REMOVE_USER_BULK_CONCURRENCY must be positive: " + concurrency);
+        }
+        return concurrency;
+    }
 
-        // TODO: Remove the check for user testing. Return it back afterwards
-//        allowedToDelete(phone)
-//                .setHandler(asyncresult -> {
-//                    if (asyncresult.failed()) {
-//                        Errors.error(routingContext, 400, asyncresult.cause());
-//                        LOGGER.warning("Couldn't get result from Mongo");
-//                        return;
-//                    }
-//
-//                    if (asyncresult.result() == null || asyncresult.result().isEmpty()) {
-//                        String errorMsg = "Tried to remove a non-whitelisted number: " + phone;
-//                        Errors.error(routingContext, 403, errorMsg);
-//                        LOGGER.warning(errorMsg);
-//                        return;
-//                    }
-//                    removeUserThroughApi(phone, server, routingContext);
-//                });
+    /**
+     * Every attempt is recorded in the audit log with the actor and the outcome. A removal is refused with
+     * {@link BackendUnavailableException} when the audit log can't take more events. Only phones of a '+'
+     * and digits reach the removal API, they are put into its URL as they are. Other phones fail with
+     * {@link ValidationException} and are not audited, no removal was attempted
+     */
+    @Override
+    public Future<Void> deleteUser(String phone, String server, String actor, Deadline deadline) {
+        Log.info(LOGGER, "delete_user", "phone", phone, "server", server, "user", actor);
+        if (!Utils.isPhoneNumber(phone)) {
+            return Future.failedFuture(new ValidationException("Unexpected phone format: " + phone));
+        }
+        if (!auditLog.reserve()) {
+            return Future.failedFuture(new BackendUnavailableException("Audit log is full, try again later"));
+        }
+        Promise<Void> result = Promise.promise();
+        checkWhitelisted(phone, deadline).compose(__ -> removeUserThroughApi(phone, server, deadline))
+                .setHandler(ar -> {
+                    if (ar.succeeded()) {
+                        auditLog.record(actor, phone, server, 204, null);
+                    } else {
+                        auditLog.record(actor, phone, server, Errors.status(ar.cause()), String.valueOf(ar.cause().getMessage()));
+                    }
+                    result.handle(ar);
+                });
+        return result.future();
     }
 
-    private void removeUserThroughApi(String phone, String server, RoutingContext routingContext) {
-        OkHttpClient client = new OkHttpClient();
-        String endpoint = "prod".equals(server) ? REMOVE_USER_PROD_ENDPOINT : REMOVE_USER_DEV_ENDPOINT;
-        Request request = new Request.Builder().url(endpoint + phone)
-                .addHeader("x-auth-token", Utils.getParam(DELETE_TOKEN_ENV)).delete().build();
-        client.newCall(request).enqueue(new Callback() {
+    /**
+     * Removes the users with at most REMOVE_USER_BULK_CONCURRENCY calls in flight, see {@link BulkRemoval}.
+     * The deadline is for the whole batch, removals not started by then fail with 504.
+     */
+    @Override
+    public Future<Void> deleteUsers(List<String> phones, String server, String actor, Deadline deadline,
+                                    Function<JsonObject, Future<Void>> resultHandler) {
+        Log.info(LOGGER, "delete_users", "phones", phones.size(), "server", server, "user", actor);
+        return new BulkRemoval(phones, bulkConcurrency, phone -> deleteUser(phone, server, actor, deadline),
+                resultHandler).start();
+    }
 
-            @Override
-            public void onResponse(Call arg0, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    LOGGER.info("Deleted the user: " + phone);
-                    routingContext.response().setStatusCode(204).end();
-                } else {
-                    String msg = "Failed to delete the user: " + phone;
-                    LOGGER.warning(msg + ". " + response.code());
-                    Errors.error(routingContext, response.code(), msg);
-                }
-            }
+    /**
+     * Newest first, including the removals of this instance not flushed to the audit log collection yet
+     *
+     * @param phone null for removals of any phone
+     */
+    @Override
+    public Future<JsonArray> recentRemovals(int limit, String phone, Deadline deadline) {
+        return mongoGuard.call(deadline, () -> auditLog.recent(limit, phone));
+    }
 
-            @Override
-            public void onFailure(Call arg0, IOException arg1) {
-                routingContext.fail(arg1);
+    /**
+     * Completes when the audit events left are flushed
+     */
+    @Override
+    public Future<Void> close() {
+        removalApi.close();
+        if (whitelist != null) {
+            whitelist.close();
+        }
+        return auditLog.close();
+    }
+
+    private Future<Void> removeUserThroughApi(String phone, String server, Deadline deadline) {
+        return removalApiGuard.call(deadline, () -> removalApi.remove(phone, server))
+                .map(__ -> {
+                    Log.info(LOGGER, "user_deleted", "phone", phone);
+                    vertx.eventBus().publish(UserInfoCache.INVALIDATE_ADDRESS, phone);
+                    return (Void) null;
+                })
+                .recover(cause -> {
+                    Log.warning(LOGGER, "delete_user_failed", "phone", phone, "cause", cause);
+                    return Future.failedFuture(cause);
+                });
+    }
+
+    /**
+     * Answered from the in-memory whitelist. Phones missing there are looked up in Mongo,
+     * as they may have been whitelisted after the last sync
+     */
+    private Future<Void> checkWhitelisted(String phone, Deadline deadline) {
+        if (whitelist == null) {
+            return Future.succeededFuture();
+        }
+        if (whitelist.contains(phone)) {
+            Metrics.WHITELIST_HITS.increment();
+            return Future.succeededFuture();
+        }
+        Metrics.WHITELIST_FALLBACKS.increment();
+        return allowedToDelete(phone, deadline).compose(entry -> {
+            if (entry == null || entry.isEmpty()) {
+                Log.warning(LOGGER, "delete_user_not_whitelisted", "phone", phone);
+                return Future.failedFuture(new RemoteApiException(403, "Tried to remove a non-whitelisted number: " + phone));
             }
+            whitelist.add(phone);
+            return Future.succeededFuture();
         });
     }
 
-    private Future<JsonObject> allowedToDelete(String phone) {
-        Promise<JsonObject> result = Promise.promise();
-        mongoClient.findOne("phones_to_delete", new JsonObject().put("phone", phone), null, result);
-        return result.future();
+    private Future<JsonObject> allowedToDelete(String phone, Deadline deadline) {
+        return mongoGuard.call(deadline, () -> {
+            Promise<JsonObject> result = Promise.promise();
+            mongoClient.findOne("phones_to_delete", new JsonObject().put("phone", phone), null, result);
+            return result.future();
+        });
     }
-}
\ No newline at end of file
+}
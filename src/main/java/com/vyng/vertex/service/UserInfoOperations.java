@@ -0,0 +1,24 @@
+package com.vyng.vertex.service;
+
+import com.vyng.vertex.model.UserInfo;
+import com.vyng.vertex.resilience.Deadline;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * User info lookups, served in the same verticle by {@link GetUserInfoService}
+ * or by user info verticles over the event bus.
+ */
+public interface UserInfoOperations {
+
+    Future<UserInfo> getUserInfo(String id, String remoteIp, Deadline deadline);
+
+    /**
+     * See {@link GetUserInfoService#getUsersInfo(List, String, Deadline, Function)}
+     */
+    Future<Void> getUsersInfo(List<String> ids, String remoteIp, Deadline deadline,
+                              Function<List<Buffer>, Future<Void>> chunkHandler);
+}
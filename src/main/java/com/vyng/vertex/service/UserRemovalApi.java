@@ -0,0 +1,17 @@
+package com.vyng.vertex.service;
+
+import com.vyng.vertex.error.RemoteApiException;
+import io.vertx.core.Future;
+
+/**
+ * Backend which actually removes users, see {@link HttpUserRemovalApi}.
+ */
+public interface UserRemovalApi {
+
+    /**
+     * Fails with {@link RemoteApiException} carrying the status code if the API didn't remove the user.
+     */
+    Future<Void> remove(String phone, String server);
+
+    void close();
+}
@@ -0,0 +1,31 @@
+package com.vyng.vertex.service;
+
+import com.vyng.vertex.resilience.Deadline;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * User removals, served in the same verticle by {@link RemoveUserService}
+ * or by user removal verticles over the event bus.
+ */
+public interface UserRemovalOperations {
+
+    Future<Void> deleteUser(String phone, String server, String actor, Deadline deadline);
+
+    /**
+     * See {@link BulkRemoval}
+     */
+    Future<Void> deleteUsers(List<String> phones, String server, String actor, Deadline deadline,
+                             Function<JsonObject, Future<Void>> resultHandler);
+
+    Future<JsonArray> recentRemovals(int limit, String phone, Deadline deadline);
+
+    /**
+     * Completes when the resources of the service are released
+     */
+    Future<Void> close();
+}
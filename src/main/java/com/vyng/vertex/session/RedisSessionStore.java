@@ -0,0 +1,295 @@
+package com.vyng.vertex.session;
+
+import com.vyng.vertex.cache.LruCache;
+import com.vyng.vertex.config.AppConfig;
+import com.vyng.vertex.utils.RedisScript;
+import com.vyng.vertex.utils.Utils;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.PRNG;
+import io.vertx.ext.web.Session;
+import io.vertx.ext.web.sstore.SessionStore;
+import io.vertx.ext.web.sstore.impl.SharedDataSessionImpl;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.op.ScanOptions;
+import io.vertx.redis.op.SetOptions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Session store shared by all the instances and nodes through Redis, so no sticky routing is needed
+ * and a restart doesn't log users out. Sessions expire by the Redis TTL.
+ * <p>
+ * Hot sessions are kept in a small near cache for a few seconds, a request of such a session doesn't touch Redis.
+ * Every instance has its own near cache: a session written or deleted by one instance is dropped by the others
+ * through {@link #INVALIDATE_ADDRESS}, so a logout or a login is seen everywhere at once.
+ * A session is written only if its content has changed, otherwise only its TTL has to be prolonged and this is
+ * done in batches by a timer. Not thread safe: one store per verticle instance, used from its event loop.
+ */
+public class RedisSessionStore implements SessionStore {
+
+    public static final String INVALIDATE_ADDRESS = "sessions.invalidate";
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("RedisSessionStore");
+
+    private static final int DEFAULT_SESSIONID_LENGTH = 16;
+    private static final int TTL_REFRESH_BATCH = 500;
+    private static final long KNOWN_CONTENT_TTL_MS = 10 * 60 * 1000;
+    private static final int SCAN_COUNT = 500;
+    private static final String ORIGIN_HEADER = "origin";
+
+    // ARGV[i] is the TTL in millis for KEYS[i]
+    private static final RedisScript REFRESH_TTL_SCRIPT = new RedisScript(
+            "for i, key in ipairs(KEYS) do\n" +
+            "  redis.call('PEXPIRE', key, ARGV[i])\n" +
+            "end\n" +
+            "return {}\n");
+
+    private final Vertx vertx;
+    private final RedisClient redisClient;
+    private final String keyPrefix;
+    private final PRNG random;
+    private final long refreshTimerId;
+    // Tells the invalidations of this store from the ones of the other instances
+    private final String origin = UUID.randomUUID().toString();
+    private final DeliveryOptions invalidateOptions = new DeliveryOptions().addHeader(ORIGIN_HEADER, origin);
+    private final MessageConsumer<String> invalidations;
+    // Serialized sessions as they are in Redis. Short TTL, read by get
+    private final LruCache<String, Buffer> nearCache;
+    // Same, but kept longer and only used by put to find out if a session has changed
+    private final LruCache<String, Buffer> knownContent;
+    // Unchanged sessions waiting for the TTL refresh: id -> timeout
+    private Map<String, Long> touched = new HashMap<>();
+
+    public RedisSessionStore(Vertx vertx, RedisClient redisClient) {
+        this.vertx = vertx;
+        this.redisClient = redisClient;
+        this.keyPrefix = AppConfig.current().getEnv() + ":session:";
+        this.random = new PRNG(vertx);
+        int nearCacheSize = Integer.parseInt(Utils.getParam("SESSION_NEAR_CACHE_SIZE", "1000"));
+        this.nearCache = new LruCache<>(nearCacheSize, Long.parseLong(Utils.getParam("SESSION_NEAR_CACHE_TTL_MS", "5000")));
+        this.knownContent = new LruCache<>(nearCacheSize, KNOWN_CONTENT_TTL_MS);
+        this.refreshTimerId = vertx.setPeriodic(Long.parseLong(Utils.getParam("SESSION_TTL_REFRESH_PERIOD_MS", "10000")),
+                __ -> refreshTouched());
+        this.invalidations = vertx.eventBus().consumer(INVALIDATE_ADDRESS, message -> {
+            if (!origin.equals(message.headers().get(ORIGIN_HEADER))) {
+                nearCache.remove(message.body());
+                knownContent.remove(message.body());
+            }
+        });
+    }
+
+    public SessionStore init(Vertx vertx, JsonObject options) {
+        // Configured through the constructor
+        return this;
+    }
+
+    @Override
+    public long retryTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Session createSession(long timeout) {
+        return createSession(timeout, DEFAULT_SESSIONID_LENGTH);
+    }
+
+    @Override
+    public Session createSession(long timeout, int length) {
+        return new SharedDataSessionImpl(random, timeout, length);
+    }
+
+    @Override
+    public void get(String id, Handler<AsyncResult<Session>> resultHandler) {
+        Buffer cached = nearCache.get(id);
+        if (cached != null) {
+            resultHandler.handle(Future.succeededFuture(deserialize(cached)));
+            return;
+        }
+        redisClient.getBinary(keyPrefix + id, ar -> {
+            if (ar.failed()) {
+                resultHandler.handle(Future.failedFuture(ar.cause()));
+            } else if (ar.result() == null || ar.result().length() == 0) {
+                resultHandler.handle(Future.succeededFuture());
+            } else {
+                nearCache.put(id, ar.result());
+                knownContent.put(id, ar.result());
+                resultHandler.handle(Future.succeededFuture(deserialize(ar.result())));
+            }
+        });
+    }
+
+    @Override
+    public void delete(String id, Handler<AsyncResult<Void>> resultHandler) {
+        nearCache.remove(id);
+        knownContent.remove(id);
+        touched.remove(id);
+        redisClient.del(keyPrefix + id, ar -> {
+            invalidateOthers(id);
+            resultHandler.handle(ar.mapEmpty());
+        });
+    }
+
+    @Override
+    public void put(Session session, Handler<AsyncResult<Void>> resultHandler) {
+        Buffer serialized = Buffer.buffer();
+        ((SharedDataSessionImpl) session).writeToBuffer(serialized);
+
+        Buffer known = knownContent.get(session.id());
+        if (known != null && sameContent(session, known, serialized)) {
+            touched.put(session.id(), session.timeout());
+            resultHandler.handle(Future.succeededFuture());
+            return;
+        }
+
+        touched.remove(session.id());
+        SetOptions options = new SetOptions().setPX(session.timeout());
+        redisClient.setBinaryWithOptions(keyPrefix + session.id(), serialized, options, ar -> {
+            if (ar.succeeded()) {
+                nearCache.put(session.id(), serialized);
+                knownContent.put(session.id(), serialized);
+            } else {
+                nearCache.remove(session.id());
+                knownContent.remove(session.id());
+            }
+            invalidateOthers(session.id());
+            resultHandler.handle(ar);
+        });
+    }
+
+    @Override
+    public void clear(Handler<AsyncResult<Void>> resultHandler) {
+        nearCache.clear();
+        knownContent.clear();
+        touched.clear();
+        scan("0", keys -> {
+            Promise<Long> deleted = Promise.promise();
+            redisClient.delMany(keys, deleted);
+            return deleted.future().mapEmpty();
+        }, resultHandler);
+    }
+
+    @Override
+    public void size(Handler<AsyncResult<Integer>> resultHandler) {
+        int[] size = new int[1];
+        scan("0", keys -> {
+            size[0] += keys.size();
+            return Future.succeededFuture();
+        }, ar -> resultHandler.handle(ar.map(size[0])));
+    }
+
+    @Override
+    public void close() {
+        vertx.cancelTimer(refreshTimerId);
+        invalidations.unregister();
+        refreshTouched();
+        random.close();
+    }
+
+    private void invalidateOthers(String id) {
+        vertx.eventBus().publish(INVALIDATE_ADDRESS, id, invalidateOptions);
+    }
+
+    /**
+     * Walks the session keys with SCAN, KEYS would block Redis for all the other clients.
+     * Pages are handled one after another, the next one is requested once the future of the previous completes
+     */
+    private void scan(String cursor, Function<List<String>, Future<Void>> pageHandler, Handler<AsyncResult<Void>> done) {
+        ScanOptions options = new ScanOptions().setMatch(keyPrefix + "*").setCount(SCAN_COUNT);
+        redisClient.scan(cursor, options, ar -> {
+            if (ar.failed()) {
+                done.handle(Future.failedFuture(ar.cause()));
+                return;
+            }
+            String next = ar.result().getString(0);
+            JsonArray page = ar.result().getJsonArray(1);
+            List<String> keys = new ArrayList<>(page.size());
+            page.forEach(key -> keys.add((String) key));
+            Future<Void> handled = keys.isEmpty() ? Future.succeededFuture() : pageHandler.apply(keys);
+            handled.setHandler(pageDone -> {
+                if (pageDone.failed() || "0".equals(next)) {
+                    done.handle(pageDone);
+                } else {
+                    scan(next, pageHandler, done);
+                }
+            });
+        });
+    }
+
+    private Session deserialize(Buffer buffer) {
+        SharedDataSessionImpl session = new SharedDataSessionImpl(random);
+        session.readFromBuffer(0, buffer);
+        return session;
+    }
+
+    /**
+     * Compares the serialized sessions ignoring the last accessed time: it changes with every request.
+     * The layout is id length, id, timeout, last accessed, then the data. If the layout is not the expected one,
+     * the sessions are considered different, so it degrades to writing every time.
+     */
+    private static boolean sameContent(Session session, Buffer previous, Buffer current) {
+        if (previous.length() != current.length()) {
+            return false;
+        }
+        int lastAccessedPos = Integer.BYTES + session.id().getBytes(StandardCharsets.UTF_8).length + Long.BYTES;
+        if (current.length() < lastAccessedPos + Long.BYTES || current.getLong(lastAccessedPos) != session.lastAccessed()) {
+            return false;
+        }
+        for (int i = 0; i < current.length(); i++) {
+            if (i == lastAccessedPos) {
+                i += Long.BYTES - 1;
+                continue;
+            }
+            if (previous.getByte(i) != current.getByte(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void refreshTouched() {
+        if (touched.isEmpty()) {
+            return;
+        }
+        Map<String, Long> batch = touched;
+        touched = new HashMap<>();
+
+        List<String> keys = new ArrayList<>(TTL_REFRESH_BATCH);
+        List<String> ttls = new ArrayList<>(TTL_REFRESH_BATCH);
+        for (Map.Entry<String, Long> entry : batch.entrySet()) {
+            keys.add(keyPrefix + entry.getKey());
+            ttls.add(String.valueOf(entry.getValue()));
+            if (keys.size() == TTL_REFRESH_BATCH) {
+                refreshTtl(keys, ttls);
+                keys = new ArrayList<>(TTL_REFRESH_BATCH);
+                ttls = new ArrayList<>(TTL_REFRESH_BATCH);
+            }
+        }
+        if (!keys.isEmpty()) {
+            refreshTtl(keys, ttls);
+        }
+    }
+
+    private void refreshTtl(List<String> keys, List<String> ttls) {
+        REFRESH_TTL_SCRIPT.eval(redisClient, keys, ttls).setHandler(ar -> {
+            if (ar.failed()) {
+                LOGGER.warning("Could not refresh TTL of " + keys.size() + " sessions: " + ar.cause());
+            }
+        });
+    }
+}
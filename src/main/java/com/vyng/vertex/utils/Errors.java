@@ -1,5 +1,9 @@
 package com.vyng.vertex.utils;
 
+import com.vyng.vertex.error.BackendUnavailableException;
+import com.vyng.vertex.error.DeadlineExceededException;
+import com.vyng.vertex.error.RemoteApiException;
+import com.vyng.vertex.error.ValidationException;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 
@@ -19,4 +23,30 @@ public class Errors {
     public static void error(RoutingContext ctx, int status, Throwable cause) {
       error(ctx, status, cause.getMessage());
     }
+
+    /**
+     * 503 when a backend is known to be down, 504 when it didn't answer in time, 500 for anything else
+     */
+    public static int backendStatus(Throwable cause) {
+      if (cause instanceof BackendUnavailableException) {
+        return 503;
+      }
+      if (cause instanceof DeadlineExceededException) {
+        return 504;
+      }
+      return 500;
+    }
+
+    /**
+     * Status of a remote API failure as it is, 400 for rejected input, {@link #backendStatus(Throwable)} otherwise
+     */
+    public static int status(Throwable cause) {
+      if (cause instanceof RemoteApiException) {
+        return ((RemoteApiException) cause).getStatusCode();
+      }
+      if (cause instanceof ValidationException) {
+        return 400;
+      }
+      return backendStatus(cause);
+    }
   }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.vyng.vertex.utils;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.List;
+
+/**
+ * Streams a JSON array to a chunked response piece by piece, so a big result is never buffered as a whole.
+ * Headers are sent with the first written element, until then the response can still be used for an error.
+ */
+public class JsonArrayStreamWriter {
+
+    private final HttpServerResponse response;
+    private boolean started;
+    private Promise<Void> drained;
+
+    public JsonArrayStreamWriter(HttpServerResponse response) {
+        this.response = response;
+    }
+
+    /**
+     * @param elements already encoded json values
+     * @return future completed when the response is ready to take more data
+     */
+    public Future<Void> write(List<Buffer> elements) {
+        if (response.closed()) {
+            return Future.failedFuture("Connection closed by the client");
+        }
+        start();
+        for (Buffer element : elements) {
+            response.write(started ? ",\n" : "[\n");
+            started = true;
+            response.write(element);
+        }
+        if (!response.writeQueueFull()) {
+            return Future.succeededFuture();
+        }
+        // Several concurrent writers may wait for the same drain
+        if (drained == null) {
+            Promise<Void> promise = Promise.promise();
+            drained = promise;
+            response.drainHandler(__ -> {
+                drained = null;
+                promise.tryComplete();
+            });
+            response.closeHandler(__ -> {
+                drained = null;
+                promise.tryFail("Connection closed by the client");
+            });
+        }
+        return drained.future();
+    }
+
+    public void end() {
+        if (response.closed()) {
+            return;
+        }
+        start();
+        response.end(started ? "\n]" : "[]");
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    private void start() {
+        if (!response.headWritten()) {
+            response.setStatusCode(200)
+                    .setChunked(true)
+                    .putHeader("content-type", "application/json; charset=utf-8");
+        }
+    }
+}
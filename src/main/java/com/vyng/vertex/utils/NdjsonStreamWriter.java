@@ -0,0 +1,58 @@
+package com.vyng.vertex.utils;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+
+/**
+ * Streams newline-delimited JSON to a chunked response. Like {@link JsonArrayStreamWriter}, every write tells
+ * when the response can take more, and headers are sent with the first write.
+ */
+public class NdjsonStreamWriter {
+
+    private final HttpServerResponse response;
+
+    public NdjsonStreamWriter(HttpServerResponse response) {
+        this.response = response;
+    }
+
+    /**
+     * @param lines json values, each followed by a line break
+     * @return future completed when the response is ready to take more data, failed if the client went away
+     */
+    public Future<Void> write(Buffer lines) {
+        if (response.closed()) {
+            return Future.failedFuture("Connection closed by the client");
+        }
+        start();
+        response.write(lines);
+        if (!response.writeQueueFull()) {
+            return Future.succeededFuture();
+        }
+        Promise<Void> drained = Promise.promise();
+        response.drainHandler(__ -> drained.tryComplete());
+        response.closeHandler(__ -> drained.tryFail("Connection closed by the client"));
+        return drained.future();
+    }
+
+    public void end() {
+        if (response.closed()) {
+            return;
+        }
+        start();
+        response.end();
+    }
+
+    public boolean isStarted() {
+        return response.headWritten();
+    }
+
+    private void start() {
+        if (!response.headWritten()) {
+            response.setStatusCode(200)
+                    .setChunked(true)
+                    .putHeader("content-type", "application/x-ndjson; charset=utf-8");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.vyng.vertex.utils;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.redis.RedisClient;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Lua script executed on the Redis side. Sends only the sha1 of the script and falls back to a full EVAL
+ * when Redis doesn't know it yet (first call, restart or failover).
+ */
+public class RedisScript {
+
+    private final String script;
+    private final String sha1;
+
+    public RedisScript(String script) {
+        this.script = script;
+        this.sha1 = sha1Hex(script);
+    }
+
+    public Future<JsonArray> eval(RedisClient redisClient, List<String> keys, List<String> args) {
+        Promise<JsonArray> promise = Promise.promise();
+        redisClient.evalsha(sha1, keys, args, ar -> {
+            if (ar.failed() && isNoScript(ar.cause())) {
+                // EVAL also puts the script into the Redis script cache, so next calls go through EVALSHA again
+                redisClient.eval(script, keys, args, promise);
+            } else {
+                promise.handle(ar);
+            }
+        });
+        return promise.future();
+    }
+
+    private static boolean isNoScript(Throwable cause) {
+        return cause != null && cause.getMessage() != null && cause.getMessage().startsWith("NOSCRIPT");
+    }
+
+    private static String sha1Hex(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
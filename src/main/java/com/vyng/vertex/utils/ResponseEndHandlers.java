@@ -0,0 +1,36 @@
+package com.vyng.vertex.utils;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A response takes a single end handler, this lets several handlers of a request share it.
+ * <p>
+ * Unlike body end handlers, end handlers are called also when the connection is closed or reset
+ * before the response is complete, so counters of requests in flight don't leak.
+ */
+public final class ResponseEndHandlers {
+
+    private static final String CONTEXT_KEY = "responseEndHandlers";
+
+    private ResponseEndHandlers() {
+    }
+
+    public static void add(RoutingContext rc, Handler<Void> handler) {
+        List<Handler<Void>> handlers = rc.get(CONTEXT_KEY);
+        if (handlers == null) {
+            List<Handler<Void>> all = new ArrayList<>(2);
+            rc.put(CONTEXT_KEY, all);
+            rc.response().endHandler(__ -> {
+                for (Handler<Void> registered : all) {
+                    registered.handle(null);
+                }
+            });
+            handlers = all;
+        }
+        handlers.add(handler);
+    }
+}
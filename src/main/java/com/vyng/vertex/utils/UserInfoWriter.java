@@ -0,0 +1,77 @@
+package com.vyng.vertex.utils;
+
+import com.vyng.vertex.model.UserInfo;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+
+/**
+ * Writes user info straight into a response buffer, without an intermediate JsonObject or String.
+ * The buffer is allocated once with the exact size for ASCII values, which ids, phones and dates are.
+ */
+public final class UserInfoWriter {
+
+    private static final String[] COMPACT = {"{\"_id\":", ",\"phoneNumber\":", ",\"createdAt\":", "}"};
+    private static final String[] PRETTY = {"{\n  \"_id\" : ", ",\n  \"phoneNumber\" : ", ",\n  \"createdAt\" : ", "\n}"};
+
+    private UserInfoWriter() {
+    }
+
+    public static Buffer write(UserInfo user, boolean pretty) {
+        String[] parts = pretty ? PRETTY : COMPACT;
+        int size = parts[0].length() + parts[1].length() + parts[2].length() + parts[3].length()
+                + sizeOf(user.getId()) + sizeOf(user.getPhoneNumber()) + sizeOf(user.getCreatedAt());
+        Buffer buffer = Buffer.buffer(size);
+        appendAscii(buffer, parts[0]);
+        appendValue(buffer, user.getId());
+        appendAscii(buffer, parts[1]);
+        appendValue(buffer, user.getPhoneNumber());
+        appendAscii(buffer, parts[2]);
+        appendValue(buffer, user.getCreatedAt());
+        appendAscii(buffer, parts[3]);
+        return buffer;
+    }
+
+    // Quotes plus the value, escaping is rare and only makes the buffer grow
+    private static int sizeOf(String value) {
+        return value == null ? 4 : value.length() + 2;
+    }
+
+    private static void appendValue(Buffer buffer, String value) {
+        if (value == null) {
+            appendAscii(buffer, "null");
+            return;
+        }
+        if (!isAscii(value)) {
+            // Not expected in these fields, let Jackson do the full escaping and UTF-8 encoding
+            buffer.appendString(Json.encode(value));
+            return;
+        }
+        buffer.appendByte((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.appendByte((byte) '\\').appendByte((byte) c);
+            } else if (c < 0x20) {
+                appendAscii(buffer, String.format("\\u%04x", (int) c));
+            } else {
+                buffer.appendByte((byte) c);
+            }
+        }
+        buffer.appendByte((byte) '"');
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void appendAscii(Buffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.appendByte((byte) value.charAt(i));
+        }
+    }
+}
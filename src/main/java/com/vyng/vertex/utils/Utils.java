@@ -17,8 +17,46 @@ public class Utils {
             param = System.getenv(key);
         }
         if (param == null) {
-            param = "";
+            param = def;
         }
         return param;
     }
+
+    /**
+     * Checks that the value is a 24 chars hex Mongo ObjectId, without allocating
+     */
+    public static boolean isObjectId(String value) {
+        if (value == null || value.length() != 24) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An optional leading '+' and 1 to 20 digits. Phones go into the path of the removal API request,
+     * anything else could change the resource it hits
+     */
+    public static boolean isPhoneNumber(String value) {
+        if (value == null) {
+            return false;
+        }
+        int start = value.startsWith("+") ? 1 : 0;
+        int digits = value.length() - start;
+        if (digits < 1 || digits > 20) {
+            return false;
+        }
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,225 @@
+package com.vyng.vertex.verticle;
+
+import com.vyng.vertex.config.AppConfig;
+import com.vyng.vertex.config.ConfigWatcher;
+import com.vyng.vertex.service.Backends;
+import com.vyng.vertex.utils.Utils;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Launcher;
+import io.vertx.core.Promise;
+import io.vertx.core.Verticle;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.redis.RedisClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Bootstrap of the server: validates the config once, prepares the backends in parallel without blocking
+ * the event loop and deploys the service verticles and HTTP_INSTANCES (number of cores by default)
+ * of {@link HttpServerVerticle}. They share the Mongo connection pools, the HTTP verticles share the port.
+ */
+public class MainVerticle extends AbstractVerticle {
+
+    private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger("MainVerticle");
+
+    private static final String[] REQUIRED_PARAMS =
+            {"PORT", "MONGODB_URI", "REDISCLOUD_URL", "USER_CONFIG_PATH", "MAX_USER_REQUESTS", "MAX_TOTAL_REQUESTS"};
+    private static final String[] NUMBER_PARAMS = {"PORT"};
+    private static final long HTTP_CLOSE_MARGIN_MS = 5000;
+
+    private final Backends backends;
+
+    private ConfigWatcher configWatcher;
+
+    public MainVerticle() {
+        this(new Backends());
+    }
+
+    public MainVerticle(Backends backends) {
+        this.backends = backends;
+    }
+
+    public static void main(final String[] args) {
+        Launcher.executeCommand("run", MainVerticle.class.getName(),
+                "-conf config/my-application-conf.json");
+    }
+
+    @Override
+    public void start(Promise<Void> prom) {
+        long startedAt = System.currentTimeMillis();
+        // The live settings are published on start and republished when the config file changes
+        ConfigWatcher.start(vertx, config().copy()).setHandler(started -> {
+            if (started.failed()) {
+                LOGGER.severe("Invalid config: " + started.cause().getMessage());
+                prom.fail(started.cause());
+                return;
+            }
+            configWatcher = started.result();
+            JsonObject config;
+            try {
+                config = loadConfig(configWatcher.getConfig());
+            } catch (IllegalStateException ex) {
+                LOGGER.severe("Invalid config: " + ex.getMessage());
+                prom.fail(ex);
+                return;
+            }
+            prepareBackends(config, startedAt, prom);
+        });
+    }
+
+    @Override
+    public void stop() {
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
+    }
+
+    private void prepareBackends(JsonObject config, long startedAt, Promise<Void> prom) {
+        // Warm up the shared pools and check the backends while the user config is being downloaded.
+        // Failures are only logged: the backends may come up later, /health/ready fails until they answer pings
+        MongoClient mongoClient = backends.usersMongo(vertx);
+        MongoClient herokuMongoClient = backends.herokuMongo(vertx);
+        RedisClient redisClient = backends.redis(vertx);
+        CompositeFuture.join(
+                logFailure(downloadUserConfig(), "Could not download user config"),
+                logFailure(pingMongo(mongoClient), "Mongo is not available"),
+                logFailure(pingMongo(herokuMongoClient), "Heroku Mongo is not available"),
+                logFailure(pingRedis(redisClient), "Redis is not available"))
+                .setHandler(__ -> {
+                    redisClient.close(closed -> {
+                    });
+                    LOGGER.info("Backends initialized in " + (System.currentTimeMillis() - startedAt) + " ms");
+                    deployVerticles(config, prom);
+                });
+    }
+
+    /**
+     * Values from the env are copied into the config, so the HTTP verticles get everything in one place.
+     * The live settings are validated by {@link AppConfig}
+     */
+    private JsonObject loadConfig(JsonObject merged) {
+        JsonObject config = merged.copy();
+        for (String key : REQUIRED_PARAMS) {
+            String value = config.getValue(key) != null ? String.valueOf(config.getValue(key)) : System.getenv(key);
+            if (value == null || value.isEmpty()) {
+                throw new IllegalStateException("Param is not set: " + key);
+            }
+            config.put(key, value);
+        }
+        for (String key : NUMBER_PARAMS) {
+            try {
+                Integer.parseInt(config.getString(key));
+            } catch (NumberFormatException ex) {
+                throw new IllegalStateException("Param is not a number: " + key);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * With SERVICE_TRANSPORT=eventbus (the default) lookups and removals run in their own verticles,
+     * USER_INFO_INSTANCES (number of cores by default) and USER_REMOVAL_INSTANCES (1 by default),
+     * deployed before the HTTP verticles which send them requests and stopped after them, see {@link StopBarrier}.
+     * With direct they run in the HTTP verticles.
+     */
+    private void deployVerticles(JsonObject config, Promise<Void> prom) {
+        String cores = String.valueOf(Runtime.getRuntime().availableProcessors());
+        String transport = Utils.getParam("SERVICE_TRANSPORT", "eventbus");
+        config.put("SERVICE_TRANSPORT", transport);
+        int httpInstances = Integer.parseInt(Utils.getParam("HTTP_INSTANCES", cores));
+        // The HTTP verticles drain for at most DRAIN_TIMEOUT_MS, then close the server and their clients
+        StopBarrier httpStopped = new StopBarrier(httpInstances,
+                Long.parseLong(Utils.getParam("DRAIN_TIMEOUT_MS", "10000")) + HTTP_CLOSE_MARGIN_MS);
+
+        Future<Void> services = Future.succeededFuture();
+        if ("eventbus".equals(transport)) {
+            services = CompositeFuture.all(
+                    deploy("user info", Integer.parseInt(Utils.getParam("USER_INFO_INSTANCES", cores)),
+                            () -> new UserInfoVerticle(backends, httpStopped), config),
+                    deploy("user removal", Integer.parseInt(Utils.getParam("USER_REMOVAL_INSTANCES", "1")),
+                            () -> new UserRemovalVerticle(backends, httpStopped), config))
+                    .mapEmpty();
+        }
+        services.compose(__ -> deploy("HTTP", httpInstances, () -> new HttpServerVerticle(backends, httpStopped), config))
+                .setHandler(prom);
+    }
+
+    // Deployed one by one to pass the backends in. HTTP verticles all listen on the same port
+    private Future<Void> deploy(String name, int instances, Supplier<Verticle> verticles, JsonObject config) {
+        DeploymentOptions options = new DeploymentOptions().setConfig(config);
+        List<Future> deployments = new ArrayList<>(instances);
+        for (int i = 0; i < instances; i++) {
+            Promise<String> deployment = Promise.promise();
+            vertx.deployVerticle(verticles.get(), options, deployment);
+            deployments.add(deployment.future());
+        }
+        return CompositeFuture.all(deployments).map(__ -> {
+            LOGGER.info("Deployed " + instances + " " + name + " verticles");
+            return (Void) null;
+        }).recover(cause -> {
+            LOGGER.severe("Could not deploy " + name + " verticles: " + cause);
+            return Future.failedFuture(cause);
+        });
+    }
+
+    /**
+     * We don't want to expose user config, so getting it via env variables
+     */
+    private Future<Void> downloadUserConfig() {
+        String path = Utils.getParam("USER_CONFIG_PATH");
+        Promise<Void> result = Promise.promise();
+        vertx.fileSystem().exists(path, exists -> {
+            if (exists.succeeded() && exists.result()) {
+                LOGGER.info("User config file already exists");
+                result.complete();
+                return;
+            }
+            WebClient client = WebClient.create(vertx);
+            client.getAbs(Utils.getParam("USER_CONFIG_URL")).send(ar -> {
+                client.close();
+                if (ar.failed()) {
+                    result.fail(ar.cause());
+                    return;
+                }
+                if (ar.result().statusCode() != 200 || ar.result().body() == null) {
+                    result.fail("Failed to download file: " + ar.result().statusCode());
+                    return;
+                }
+                LOGGER.info("User config downloaded");
+                vertx.fileSystem().writeFile(path, ar.result().body(), written -> {
+                    if (written.succeeded()) {
+                        LOGGER.info("Config written to file");
+                    }
+                    result.handle(written);
+                });
+            });
+        });
+        return result.future();
+    }
+
+    private Future<Void> pingMongo(MongoClient mongoClient) {
+        Promise<JsonObject> result = Promise.promise();
+        mongoClient.runCommand("ping", new JsonObject().put("ping", 1), result);
+        return result.future().mapEmpty();
+    }
+
+    private Future<Void> pingRedis(RedisClient redisClient) {
+        Promise<String> result = Promise.promise();
+        redisClient.ping(result);
+        return result.future().mapEmpty();
+    }
+
+    private Future<Void> logFailure(Future<Void> future, String message) {
+        return future.recover(cause -> {
+            LOGGER.severe(message + ": " + cause);
+            return Future.failedFuture(cause);
+        });
+    }
+}
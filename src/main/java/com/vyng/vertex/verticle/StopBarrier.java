@@ -0,0 +1,63 @@
+package com.vyng.vertex.verticle;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the service verticles up until the HTTP verticles sending them requests have stopped.
+ * Vert.x undeploys the children of {@link MainVerticle} in parallel, so the order is kept here:
+ * HTTP verticles {@link #arrive()} at the end of their stop, service verticles {@link #await} at the start of theirs.
+ * The wait is bounded, an HTTP verticle which failed to start never arrives.
+ */
+class StopBarrier {
+
+    private final long timeoutMs;
+    private final List<Runnable> waiting = new ArrayList<>();
+    private int remaining;
+
+    StopBarrier(int parties, long timeoutMs) {
+        this.remaining = parties;
+        this.timeoutMs = timeoutMs;
+    }
+
+    void arrive() {
+        List<Runnable> released;
+        synchronized (this) {
+            if (remaining == 0 || --remaining > 0) {
+                return;
+            }
+            released = new ArrayList<>(waiting);
+            waiting.clear();
+        }
+        released.forEach(Runnable::run);
+    }
+
+    /**
+     * Runs then on the context of the caller once all the parties arrived or the timeout passed
+     */
+    void await(Vertx vertx, Runnable then) {
+        Context context = vertx.getOrCreateContext();
+        AtomicBoolean done = new AtomicBoolean();
+        long[] timer = new long[1];
+        Runnable release = () -> {
+            if (done.compareAndSet(false, true)) {
+                context.runOnContext(__ -> {
+                    vertx.cancelTimer(timer[0]);
+                    then.run();
+                });
+            }
+        };
+        timer[0] = vertx.setTimer(timeoutMs, __ -> release.run());
+        synchronized (this) {
+            if (remaining > 0) {
+                waiting.add(release);
+                return;
+            }
+        }
+        release.run();
+    }
+}
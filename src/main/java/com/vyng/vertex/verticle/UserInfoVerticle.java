@@ -0,0 +1,77 @@
+package com.vyng.vertex.verticle;
+
+import com.vyng.vertex.bus.BatchReplies;
+import com.vyng.vertex.bus.LookupRequest;
+import com.vyng.vertex.bus.ServiceBus;
+import com.vyng.vertex.resilience.Deadline;
+import com.vyng.vertex.service.Backends;
+import com.vyng.vertex.service.GetUserInfoService;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.redis.RedisClient;
+
+/**
+ * Serves user info lookups sent by {@link com.vyng.vertex.bus.UserInfoClient}, so they scale apart from
+ * the HTTP verticles. Every instance has its own rate limiter, cache and Redis client, Mongo is shared.
+ */
+public class UserInfoVerticle extends AbstractVerticle {
+
+    private final Backends backends;
+    // Null when deployed alone
+    private final StopBarrier httpStopped;
+
+    private RedisClient redisClient;
+
+    public UserInfoVerticle() {
+        this(new Backends());
+    }
+
+    public UserInfoVerticle(Backends backends) {
+        this(backends, null);
+    }
+
+    UserInfoVerticle(Backends backends, StopBarrier httpStopped) {
+        this.backends = backends;
+        this.httpStopped = httpStopped;
+    }
+
+    @Override
+    public void start() {
+        ServiceBus.registerCodecs(vertx);
+        redisClient = backends.redis(vertx);
+        GetUserInfoService service = new GetUserInfoService(vertx, backends.usersMongo(vertx), redisClient);
+
+        vertx.eventBus().<LookupRequest>consumer(ServiceBus.USER_INFO_GET, message -> {
+            LookupRequest request = message.body();
+            service.getUserInfo(request.getIds().get(0), request.getRemoteIp(), ServiceBus.deadline(request.getTimeoutMs()))
+                    .setHandler(ar -> {
+                        if (ar.succeeded()) {
+                            message.reply(ar.result());
+                        } else {
+                            ServiceBus.fail(message, ar.cause());
+                        }
+                    });
+        });
+
+        vertx.eventBus().<LookupRequest>consumer(ServiceBus.USER_INFO_BATCH, message -> {
+            LookupRequest request = message.body();
+            Deadline deadline = ServiceBus.deadline(request.getTimeoutMs());
+            BatchReplies replies = new BatchReplies(message, deadline);
+            service.getUsersInfo(request.getIds(), request.getRemoteIp(), deadline, replies::send)
+                    .setHandler(replies::end);
+        });
+    }
+
+    /**
+     * Lookups keep being served until the HTTP verticles have drained, consumers are unregistered by the undeployment
+     */
+    @Override
+    public void stop(Promise<Void> prom) {
+        Runnable close = () -> redisClient.close(ar -> prom.complete());
+        if (httpStopped == null) {
+            close.run();
+        } else {
+            httpStopped.await(vertx, close);
+        }
+    }
+}
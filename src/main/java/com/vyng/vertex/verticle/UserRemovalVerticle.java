@@ -0,0 +1,80 @@
+package com.vyng.vertex.verticle;
+
+import com.vyng.vertex.bus.ServiceBus;
+import com.vyng.vertex.service.Backends;
+import com.vyng.vertex.service.RemoveUserService;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Serves user removals sent by {@link com.vyng.vertex.bus.UserRemovalClient}, so they scale apart from
+ * the HTTP verticles. Every instance has its own whitelist copy and audit log buffer.
+ */
+public class UserRemovalVerticle extends AbstractVerticle {
+
+    private final Backends backends;
+    // Null when deployed alone
+    private final StopBarrier httpStopped;
+
+    private RemoveUserService service;
+
+    public UserRemovalVerticle() {
+        this(new Backends());
+    }
+
+    public UserRemovalVerticle(Backends backends) {
+        this(backends, null);
+    }
+
+    UserRemovalVerticle(Backends backends, StopBarrier httpStopped) {
+        this.backends = backends;
+        this.httpStopped = httpStopped;
+    }
+
+    @Override
+    public void start() {
+        ServiceBus.registerCodecs(vertx);
+        service = new RemoveUserService(vertx, backends.herokuMongo(vertx), backends.removalApi(vertx));
+
+        vertx.eventBus().<JsonObject>consumer(ServiceBus.USER_REMOVE, message -> {
+            JsonObject request = message.body();
+            service.deleteUser(request.getString("phone"), request.getString("server"), request.getString("user"),
+                    ServiceBus.deadline(request.getLong("timeoutMs")))
+                    .setHandler(ar -> {
+                        if (ar.succeeded()) {
+                            message.reply(null);
+                        } else {
+                            ServiceBus.fail(message, ar.cause());
+                        }
+                    });
+        });
+
+        vertx.eventBus().<JsonObject>consumer(ServiceBus.USER_REMOVALS, message -> {
+            JsonObject request = message.body();
+            service.recentRemovals(request.getInteger("limit"), request.getString("phone"),
+                    ServiceBus.deadline(request.getLong("timeoutMs")))
+                    .setHandler(ar -> {
+                        if (ar.succeeded()) {
+                            message.reply(ar.result());
+                        } else {
+                            ServiceBus.fail(message, ar.cause());
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Removals keep being served until the HTTP verticles have drained, then the audit log is flushed
+     * before the clients go away
+     */
+    @Override
+    public void stop(Promise<Void> prom) {
+        Runnable close = () -> service.close().setHandler(ar -> prom.complete());
+        if (httpStopped == null) {
+            close.run();
+        } else {
+            httpStopped.await(vertx, close);
+        }
+    }
+}
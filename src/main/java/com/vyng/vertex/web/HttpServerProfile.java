@@ -0,0 +1,99 @@
+package com.vyng.vertex.web;
+
+import com.vyng.vertex.utils.Utils;
+import io.vertx.core.Handler;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Options of the HTTP server, HTTP_PROFILE=tuned by default.
+ * <p>
+ * tuned: HTTP/2 with prior knowledge or h2c upgrade and up to HTTP2_MAX_CONCURRENT_STREAMS streams per connection,
+ * gzip of responses from HTTP_COMPRESSION_MIN_SIZE bytes, TCP_NODELAY, TCP fast open and SO_REUSEPORT
+ * (the last two need the native transport: -Dvertx.options.preferNativeTransport=true), idle connections closed after
+ * HTTP_IDLE_TIMEOUT_SECONDS. Network activity is logged only with DEBUG=true, it costs a log record per frame
+ * on the event loop.
+ * <p>
+ * baseline: the options the server had before the profiles, Vert.x defaults with network activity always logged.
+ * Kept to compare against.
+ */
+public class HttpServerProfile {
+
+    public static final String TUNED = "tuned";
+    public static final String BASELINE = "baseline";
+
+    private final String name;
+    private final boolean debug;
+    private final boolean compression;
+    private final int compressionLevel;
+    private final int compressionMinSize;
+    private final int maxConcurrentStreams;
+    private final int idleTimeoutSeconds;
+    private final int acceptBacklog;
+
+    private HttpServerProfile(String name) {
+        this.name = name;
+        this.debug = Boolean.parseBoolean(Utils.getParam("DEBUG", "false"));
+        this.compression = Boolean.parseBoolean(Utils.getParam("HTTP_COMPRESSION", "true"));
+        this.compressionLevel = Integer.parseInt(Utils.getParam("HTTP_COMPRESSION_LEVEL", "6"));
+        this.compressionMinSize = Integer.parseInt(Utils.getParam("HTTP_COMPRESSION_MIN_SIZE", "1024"));
+        this.maxConcurrentStreams = Integer.parseInt(Utils.getParam("HTTP2_MAX_CONCURRENT_STREAMS", "100"));
+        this.idleTimeoutSeconds = Integer.parseInt(Utils.getParam("HTTP_IDLE_TIMEOUT_SECONDS", "60"));
+        this.acceptBacklog = Integer.parseInt(Utils.getParam("HTTP_ACCEPT_BACKLOG", "1024"));
+    }
+
+    public static HttpServerProfile fromConfig() {
+        String name = Utils.getParam("HTTP_PROFILE", TUNED);
+        if (!TUNED.equals(name) && !BASELINE.equals(name)) {
+            throw new IllegalArgumentException("Unknown HTTP_PROFILE: " + name);
+        }
+        return new HttpServerProfile(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public HttpServerOptions options(int port) {
+        if (BASELINE.equals(name)) {
+            return new HttpServerOptions().setPort(port).setLogActivity(true);
+        }
+        return new HttpServerOptions().setPort(port).setLogActivity(debug)
+                .setInitialSettings(new Http2Settings().setMaxConcurrentStreams(maxConcurrentStreams))
+                .setCompressionSupported(compression)
+                .setCompressionLevel(compressionLevel)
+                .setTcpNoDelay(true)
+                .setTcpFastOpen(true)
+                .setReusePort(true)
+                .setTcpKeepAlive(true)
+                .setIdleTimeout(idleTimeoutSeconds)
+                .setAcceptBacklog(acceptBacklog);
+    }
+
+    /**
+     * Whether the server gzips responses on the fly
+     */
+    public boolean compresses() {
+        return compression && !BASELINE.equals(name);
+    }
+
+    /**
+     * First handler of the router: responses with a known length below the threshold are not compressed,
+     * the gzip framing and the CPU would cost more than they save. Streamed responses are always compressed.
+     */
+    public Handler<RoutingContext> compressionThreshold() {
+        return rc -> {
+            if (compresses()) {
+                rc.addHeadersEndHandler(__ -> {
+                    String length = rc.response().headers().get("Content-Length");
+                    if (length != null && !rc.response().headers().contains("Content-Encoding")
+                            && Long.parseLong(length) < compressionMinSize) {
+                        rc.response().putHeader("Content-Encoding", "identity");
+                    }
+                });
+            }
+            rc.next();
+        };
+    }
+}
@@ -0,0 +1,269 @@
+package com.vyng.vertex.web;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.FileSystem;
+import io.vertx.ext.web.RoutingContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Static files of a directory (on the classpath or on disk) loaded once into memory.
+ * <p>
+ * Every file is kept as is and, when it pays off, gzipped with the best compression. Responses carry a strong
+ * ETag and conditional requests get 304 without a body. The content never changes after loading, so the files
+ * are shared by all the verticle instances of the process: buffers are only read, which is safe from any thread.
+ * <p>
+ * When the server compresses responses on the fly, see {@link #withServerCompression(boolean)}, the plain variant
+ * is sent as Content-Encoding: identity. Otherwise PNGs and files which don't shrink would be gzipped on every
+ * request and served under the ETag of the plain variant without Vary, so a shared cache could hand gzip out
+ * to clients which can't read it.
+ */
+public class StaticAssets {
+
+    private static final Logger LOGGER = java.util.logging.Logger.getLogger("StaticAssets");
+    private static final ConcurrentMap<String, StaticAssets> LOADED = new ConcurrentHashMap<>();
+
+    private static final String INDEX = "index.html";
+    // Smaller files don't get a gzipped variant, the headers cost more than the saving
+    private static final int MIN_GZIP_SIZE = 256;
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "html", "text/html; charset=utf-8",
+            "css", "text/css; charset=utf-8",
+            "js", "application/javascript; charset=utf-8",
+            "json", "application/json; charset=utf-8",
+            "txt", "text/plain; charset=utf-8",
+            "svg", "image/svg+xml",
+            "png", "image/png",
+            "ico", "image/x-icon");
+
+    private final Map<String, Asset> assets;
+    private final String cacheControl;
+    private final boolean serverCompression;
+
+    private StaticAssets(Map<String, Asset> assets, String cacheControl, boolean serverCompression) {
+        this.assets = assets;
+        this.cacheControl = cacheControl;
+        this.serverCompression = serverCompression;
+    }
+
+    /**
+     * Loads the directory on a worker thread, only the first call for the directory reads the files
+     *
+     * @param maxAgeSeconds how long browsers may use css, js and images without revalidating. Pages always revalidate
+     */
+    public static Future<StaticAssets> load(Vertx vertx, String root, long maxAgeSeconds) {
+        Promise<StaticAssets> result = Promise.promise();
+        vertx.executeBlocking(promise -> promise.complete(LOADED.computeIfAbsent(root,
+                __ -> loadBlocking(vertx.fileSystem(), root, "public, max-age=" + maxAgeSeconds))), false, result);
+        return result.future();
+    }
+
+    /**
+     * Serves one file for the route, e.g. the index page of a directory
+     */
+    public Handler<RoutingContext> file(String path) {
+        Asset asset = assets.get(path);
+        if (asset == null) {
+            throw new IllegalArgumentException("No such static file: " + path);
+        }
+        return rc -> send(rc, asset);
+    }
+
+    /**
+     * Serves the files for a route ending with a wildcard: the path after the mount point is the path of the file.
+     * Directories are served by their index.html.
+     */
+    public Handler<RoutingContext> directory(String mountPoint) {
+        return rc -> {
+            String path = rc.normalisedPath();
+            String relative = path.length() > mountPoint.length() ? path.substring(mountPoint.length() + 1) : "";
+            Asset asset = assets.get(relative);
+            if (asset == null) {
+                asset = assets.get(relative.isEmpty() || relative.endsWith("/") ? relative + INDEX : relative + "/" + INDEX);
+            }
+            if (asset == null) {
+                rc.next();
+                return;
+            }
+            send(rc, asset);
+        };
+    }
+
+    /**
+     * Same files, served for a server which does or doesn't gzip responses on the fly
+     */
+    public StaticAssets withServerCompression(boolean serverCompression) {
+        return new StaticAssets(assets, cacheControl, serverCompression);
+    }
+
+    public int size() {
+        return assets.size();
+    }
+
+    private void send(RoutingContext rc, Asset asset) {
+        boolean gzip = asset.gzipped != null && acceptsGzip(rc.request().getHeader("Accept-Encoding"));
+        String etag = gzip ? asset.gzippedEtag : asset.etag;
+
+        rc.response()
+                .putHeader("ETag", etag)
+                .putHeader("Cache-Control", asset.page ? "no-cache" : cacheControl);
+        if (asset.gzipped != null) {
+            rc.response().putHeader("Vary", "Accept-Encoding");
+        }
+        if (matches(rc.request().getHeader("If-None-Match"), asset)) {
+            rc.response().setStatusCode(304).end();
+            return;
+        }
+
+        rc.response().putHeader("Content-Type", asset.contentType);
+        if (gzip) {
+            rc.response().putHeader("Content-Encoding", "gzip").end(asset.gzipped);
+        } else {
+            if (serverCompression) {
+                // Vert.x skips compressing the response and drops the header
+                rc.response().putHeader("Content-Encoding", "identity");
+            }
+            rc.response().end(asset.content);
+        }
+    }
+
+    /**
+     * Both variants have the same content, so either tag means the client has it
+     */
+    private static boolean matches(String ifNoneMatch, Asset asset) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        if (ifNoneMatch.trim().equals("*")) {
+            return true;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(asset.etag) || candidate.equals(asset.gzippedEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static StaticAssets loadBlocking(FileSystem fileSystem, String root, String cacheControl) {
+        Map<String, Asset> assets = new HashMap<>();
+        List<String> children = fileSystem.readDirBlocking(root);
+        if (!children.isEmpty()) {
+            Path base = new File(children.get(0)).getParentFile().toPath();
+            for (String child : children) {
+                loadTree(fileSystem, base, child, assets);
+            }
+        }
+        long total = assets.values().stream().mapToLong(asset -> asset.content.length()).sum();
+        LOGGER.info("Static assets loaded from " + root + ": " + assets.size() + " files, " + total + " bytes");
+        return new StaticAssets(Collections.unmodifiableMap(assets), cacheControl, false);
+    }
+
+    private static void loadTree(FileSystem fileSystem, Path base, String path, Map<String, Asset> assets) {
+        if (fileSystem.propsBlocking(path).isDirectory()) {
+            for (String child : fileSystem.readDirBlocking(path)) {
+                loadTree(fileSystem, base, child, assets);
+            }
+            return;
+        }
+        String relative = base.relativize(new File(path).toPath()).toString().replace(File.separatorChar, '/');
+        assets.put(relative, new Asset(relative, fileSystem.readFileBlocking(path)));
+    }
+
+    private static String contentType(String path) {
+        int dot = path.lastIndexOf('.');
+        String extension = dot < 0 ? "" : path.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not gzip a static file", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static class Asset {
+
+        private final Buffer content;
+        private final Buffer gzipped;
+        private final String etag;
+        private final String gzippedEtag;
+        private final String contentType;
+        private final boolean page;
+
+        private Asset(String path, Buffer content) {
+            byte[] bytes = content.getBytes();
+            String hash = hash(bytes);
+            this.content = content;
+            this.contentType = contentType(path);
+            this.page = path.endsWith(".html");
+            this.etag = '"' + hash + '"';
+            byte[] compressed = bytes.length >= MIN_GZIP_SIZE && !contentType.startsWith("image/png") ? gzip(bytes) : null;
+            if (compressed != null && compressed.length < bytes.length) {
+                this.gzipped = Buffer.buffer(compressed);
+                this.gzippedEtag = '"' + hash + "-gz\"";
+            } else {
+                this.gzipped = null;
+                this.gzippedEtag = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.vyng.vertex.cache;
+
+import com.vyng.vertex.metrics.Metrics;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(VertxExtension.class)
+class SingleFlightTest {
+
+    private SingleFlight<String, String> singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        singleFlight = new SingleFlight<>(Metrics.USER_LOOKUPS_LOADED, Metrics.USER_LOOKUPS_COALESCED);
+    }
+
+    @Test
+    void coalescesCallsInFlight(Vertx vertx, VertxTestContext testContext) {
+        vertx.runOnContext(__ -> {
+            AtomicInteger calls = new AtomicInteger();
+            Promise<String> call = Promise.promise();
+            Future<String> first = singleFlight.execute("id", () -> {
+                calls.incrementAndGet();
+                return call.future();
+            });
+            Future<String> second = singleFlight.execute("id", () -> {
+                calls.incrementAndGet();
+                return Future.succeededFuture("other");
+            });
+
+            testContext.verify(() -> {
+                assertEquals(1, calls.get());
+                assertEquals(1, singleFlight.inFlight());
+                assertEquals(1, singleFlight.executed());
+                assertEquals(1, singleFlight.coalesced());
+            });
+            call.complete("user");
+            testContext.verify(() -> {
+                assertEquals("user", first.result());
+                assertEquals("user", second.result());
+                assertEquals(0, singleFlight.inFlight());
+            });
+            testContext.completeNow();
+        });
+    }
+
+    @Test
+    void callsAgainOnceCompleted(Vertx vertx, VertxTestContext testContext) {
+        vertx.runOnContext(__ -> {
+            singleFlight.execute("id", () -> Future.succeededFuture("first"));
+            Future<String> second = singleFlight.execute("id", () -> Future.succeededFuture("second"));
+
+            testContext.verify(() -> {
+                assertEquals("second", second.result());
+                assertEquals(2, singleFlight.executed());
+                assertEquals(0, singleFlight.coalesced());
+            });
+            testContext.completeNow();
+        });
+    }
+
+    @Test
+    void failsCallersWhenTheCallThrows(Vertx vertx, VertxTestContext testContext) {
+        vertx.runOnContext(__ -> {
+            Future<String> failed = singleFlight.execute("id", () -> {
+                throw new IllegalStateException("Client is closed");
+            });
+
+            testContext.verify(() -> {
+                assertTrue(failed.failed());
+                assertEquals("Client is closed", failed.cause().getMessage());
+                // The key is released, the next caller is not left waiting for a call which never completes
+                assertEquals(0, singleFlight.inFlight());
+            });
+            Future<String> next = singleFlight.execute("id", () -> Future.succeededFuture("user"));
+            testContext.verify(() -> assertEquals("user", next.result()));
+            testContext.completeNow();
+        });
+    }
+}
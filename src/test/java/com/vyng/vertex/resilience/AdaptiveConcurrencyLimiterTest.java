@@ -0,0 +1,138 @@
+package com.vyng.vertex.resilience;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The server, the client and the limiter all run on the context of the test, like in a verticle
+ */
+@ExtendWith(VertxExtension.class)
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long SLOW_MS = 10_000;
+
+    @Test
+    void shedsRequestsAboveTheLimit(Vertx vertx, VertxTestContext testContext) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, SLOW_MS);
+        List<RoutingContext> held = new ArrayList<>();
+        withServer(vertx, testContext, limiter, held, (client, port) -> {
+            get(client, port, "/hold");
+            get(client, port, "/hold");
+            vertx.setPeriodic(10, timerId -> {
+                if (held.size() < 2) {
+                    return;
+                }
+                vertx.cancelTimer(timerId);
+                client.getNow(port, "localhost", "/ok", response -> testContext.verify(() -> {
+                    assertEquals(503, response.statusCode());
+                    assertEquals("1", response.getHeader("Retry-After"));
+                    held.forEach(rc -> rc.response().end());
+                    testContext.completeNow();
+                }));
+            });
+        });
+    }
+
+    @Test
+    void admitsAgainOnceResponsesEnd(Vertx vertx, VertxTestContext testContext) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, SLOW_MS);
+        withServer(vertx, testContext, limiter, new ArrayList<>(), (client, port) ->
+                get(client, port, "/ok")
+                        .compose(__ -> get(client, port, "/ok"))
+                        .setHandler(testContext.succeeding(status -> testContext.verify(() -> {
+                            assertEquals(200, status.intValue());
+                            testContext.completeNow();
+                        }))));
+    }
+
+    @Test
+    void cutsTheLimitOnUnavailableResponses(Vertx vertx, VertxTestContext testContext) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, SLOW_MS);
+        withServer(vertx, testContext, limiter, new ArrayList<>(), (client, port) ->
+                get(client, port, "/unavailable").setHandler(testContext.succeeding(status -> testContext.verify(() -> {
+                    assertEquals(503, status.intValue());
+                    assertEquals(9, limiter.getLimit());
+                    testContext.completeNow();
+                }))));
+    }
+
+    @Test
+    void cutsTheLimitOnSlowResponses(Vertx vertx, VertxTestContext testContext) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 0);
+        withServer(vertx, testContext, limiter, new ArrayList<>(), (client, port) ->
+                get(client, port, "/ok").setHandler(testContext.succeeding(status -> testContext.verify(() -> {
+                    assertEquals(200, status.intValue());
+                    assertEquals(9, limiter.getLimit());
+                    testContext.completeNow();
+                }))));
+    }
+
+    @Test
+    void keepsTheLimitAboveTheMinimum(Vertx vertx, VertxTestContext testContext) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 100, SLOW_MS);
+        withServer(vertx, testContext, limiter, new ArrayList<>(), (client, port) ->
+                get(client, port, "/unavailable").setHandler(testContext.succeeding(__ -> testContext.verify(() -> {
+                    assertEquals(1, limiter.getLimit());
+                    testContext.completeNow();
+                }))));
+    }
+
+    @Test
+    void growsTheLimitOnlyWhileItIsUsed(Vertx vertx, VertxTestContext testContext) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 100, SLOW_MS);
+        withServer(vertx, testContext, limiter, new ArrayList<>(), (client, port) -> {
+            // One request at a time: 1 -> 2 -> 2.5, then half of the limit is never used
+            Future<Integer> sequence = get(client, port, "/ok");
+            for (int i = 0; i < 4; i++) {
+                sequence = sequence.compose(__ -> get(client, port, "/ok"));
+            }
+            sequence.setHandler(testContext.succeeding(__ -> testContext.verify(() -> {
+                assertEquals(2, limiter.getLimit());
+                testContext.completeNow();
+            })));
+        });
+    }
+
+    private static void withServer(Vertx vertx, VertxTestContext testContext, AdaptiveConcurrencyLimiter limiter,
+                                   List<RoutingContext> held, ServerTest test) {
+        vertx.runOnContext(__ -> {
+            Router router = Router.router(vertx);
+            router.route().handler(limiter.handler());
+            router.get("/hold").handler(held::add);
+            router.get("/ok").handler(rc -> rc.response().end("OK"));
+            router.get("/unavailable").handler(rc -> rc.response().setStatusCode(503).end());
+
+            HttpServer server = vertx.createHttpServer().requestHandler(router);
+            server.listen(0, testContext.succeeding(listening ->
+                    test.run(vertx.createHttpClient(), listening.actualPort())));
+        });
+    }
+
+    private static Future<Integer> get(HttpClient client, int port, String uri) {
+        Promise<Integer> status = Promise.promise();
+        client.get(port, "localhost", uri, (HttpClientResponse response) ->
+                response.bodyHandler(__ -> status.complete(response.statusCode())))
+                .exceptionHandler(status::fail)
+                .end();
+        return status.future();
+    }
+
+    private interface ServerTest {
+        void run(HttpClient client, int port);
+    }
+}
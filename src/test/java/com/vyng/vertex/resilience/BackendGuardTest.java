@@ -0,0 +1,145 @@
+package com.vyng.vertex.resilience;
+
+import com.vyng.vertex.error.BackendUnavailableException;
+import com.vyng.vertex.error.DeadlineExceededException;
+import com.vyng.vertex.error.NotFoundException;
+import com.vyng.vertex.error.RemoteApiException;
+import com.vyng.vertex.utils.Errors;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The breaker of the guard has the default settings: a window of 50, opens from 20 calls at a failure ratio of 0.5
+ */
+@ExtendWith(VertxExtension.class)
+class BackendGuardTest {
+
+    private static final int MIN_CALLS = 20;
+
+    @Test
+    void failsWith504WithoutCallingWhenNoTimeIsLeft(Vertx vertx, VertxTestContext testContext) {
+        vertx.runOnContext(__ -> {
+            BackendGuard guard = new BackendGuard(vertx, "test", 1000);
+            AtomicInteger calls = new AtomicInteger();
+            guard.call(Deadline.after(0), () -> {
+                calls.incrementAndGet();
+                return Future.succeededFuture();
+            }).setHandler(testContext.failing(cause -> testContext.verify(() -> {
+                assertTrue(cause instanceof DeadlineExceededException);
+                assertEquals(504, Errors.backendStatus(cause));
+                assertEquals(0, calls.get());
+                testContext.completeNow();
+            })));
+        });
+    }
+
+    @Test
+    void failsWith504WhenTheBackendDoesNotAnswerInTime(Vertx vertx, VertxTestContext testContext) {
+        vertx.runOnContext(__ -> {
+            BackendGuard guard = new BackendGuard(vertx, "test", 20);
+            Promise<Void> never = Promise.promise();
+            guard.call(Deadline.none(), never::future)
+                    .setHandler(testContext.failing(cause -> testContext.verify(() -> {
+                        assertTrue(cause instanceof DeadlineExceededException);
+                        assertEquals(504, Errors.backendStatus(cause));
+                        testContext.completeNow();
+                    })));
+        });
+    }
+
+    @Test
+    void waitsNoLongerThanTheDeadline(Vertx vertx, VertxTestContext testContext) {
+        vertx.runOnContext(__ -> {
+            BackendGuard guard = new BackendGuard(vertx, "test", 60_000);
+            Promise<Void> never = Promise.promise();
+            long started = System.currentTimeMillis();
+            guard.call(Deadline.after(50), never::future)
+                    .setHandler(testContext.failing(cause -> testContext.verify(() -> {
+                        assertTrue(cause instanceof DeadlineExceededException);
+                        assertTrue(System.currentTimeMillis() - started < 5000);
+                        testContext.completeNow();
+                    })));
+        });
+    }
+
+    @Test
+    void doesNotCountTheDeadlineOfTheRequestAgainstTheBackend(Vertx vertx, VertxTestContext testContext) {
+        vertx.runOnContext(__ -> {
+            BackendGuard guard = new BackendGuard(vertx, "test", 1000);
+            AtomicInteger deadlinesExceeded = new AtomicInteger();
+            AtomicInteger answered = new AtomicInteger();
+            for (int i = 0; i < MIN_CALLS; i++) {
+                // The backend answers within its own timeout, but after the request ran out of time
+                guard.call(Deadline.after(10), () -> {
+                    Promise<Void> answer = Promise.promise();
+                    vertx.setTimer(50, timerId -> {
+                        answer.complete();
+                        if (answered.incrementAndGet() == MIN_CALLS) {
+                            testContext.verify(() -> {
+                                assertEquals(MIN_CALLS, deadlinesExceeded.get());
+                                assertEquals(CircuitBreaker.State.CLOSED, guard.getState());
+                            });
+                            testContext.completeNow();
+                        }
+                    });
+                    return answer.future();
+                }).setHandler(ar -> {
+                    if (ar.cause() instanceof DeadlineExceededException) {
+                        deadlinesExceeded.incrementAndGet();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    void failsWith503WithoutCallingWhileTheCircuitIsOpen(Vertx vertx, VertxTestContext testContext) {
+        vertx.runOnContext(__ -> {
+            BackendGuard guard = new BackendGuard(vertx, "test", 1000);
+            for (int i = 0; i < MIN_CALLS; i++) {
+                guard.call(Deadline.none(), () -> Future.failedFuture(new IllegalStateException("Connection refused")));
+            }
+            testContext.verify(() -> assertEquals(CircuitBreaker.State.OPEN, guard.getState()));
+
+            AtomicInteger calls = new AtomicInteger();
+            guard.call(Deadline.none(), () -> {
+                calls.incrementAndGet();
+                return Future.succeededFuture();
+            }).setHandler(testContext.failing(cause -> testContext.verify(() -> {
+                assertTrue(cause instanceof BackendUnavailableException);
+                assertEquals(503, Errors.backendStatus(cause));
+                assertEquals(0, calls.get());
+                testContext.completeNow();
+            })));
+        });
+    }
+
+    @Test
+    void answersAboutTheDataKeepTheCircuitClosed(Vertx vertx, VertxTestContext testContext) {
+        vertx.runOnContext(__ -> {
+            BackendGuard guard = new BackendGuard(vertx, "test", 1000);
+            for (int i = 0; i < MIN_CALLS; i++) {
+                guard.call(Deadline.none(), () -> Future.failedFuture(new NotFoundException("No such user")));
+                guard.call(Deadline.none(), () -> Future.failedFuture(new RemoteApiException(403, "Not whitelisted")));
+            }
+            testContext.verify(() -> assertEquals(CircuitBreaker.State.CLOSED, guard.getState()));
+
+            // Server errors of a remote API count as failures
+            for (int i = 0; i < MIN_CALLS * 2; i++) {
+                guard.call(Deadline.none(), () -> Future.failedFuture(new RemoteApiException(502, "Bad gateway")));
+            }
+            testContext.verify(() -> assertEquals(CircuitBreaker.State.OPEN, guard.getState()));
+            testContext.completeNow();
+        });
+    }
+}
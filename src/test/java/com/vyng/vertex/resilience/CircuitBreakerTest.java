@@ -0,0 +1,114 @@
+package com.vyng.vertex.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long LONG_OPEN_MS = 60_000;
+    private static final long OPEN_MS = 20;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    void opensOnceMinCallsAreKnownAndTheRatioIsReached() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 0.5, LONG_OPEN_MS);
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    void staysClosedBelowTheRatio() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 0.5, LONG_OPEN_MS);
+        for (int i = 0; i < 5; i++) {
+            breaker.onSuccess();
+        }
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void forgetsResultsWhichLeftTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 0.5, LONG_OPEN_MS);
+        breaker.onFailure();
+        breaker.onFailure();
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess();
+        }
+        // The two old failures are out of the window: 1 of 4
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void letsOneTrialThroughAfterOpenMsAndClosesOnItsSuccess() {
+        CircuitBreaker breaker = opened();
+        now.addAndGet(OPEN_MS - 1);
+        assertFalse(breaker.allowRequest());
+
+        now.incrementAndGet();
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // Only one trial at a time
+        assertFalse(breaker.allowRequest());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void opensAgainWhenTheTrialFails() {
+        CircuitBreaker breaker = opened();
+        now.addAndGet(OPEN_MS);
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        // Open for another openMs from the failed trial
+        now.addAndGet(OPEN_MS - 1);
+        assertFalse(breaker.allowRequest());
+        now.incrementAndGet();
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void startsWithAnEmptyWindowWhenClosedAgain() {
+        CircuitBreaker breaker = opened();
+        now.addAndGet(OPEN_MS);
+        breaker.allowRequest();
+        breaker.onSuccess();
+
+        // The failures from before the circuit opened don't count anymore
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private CircuitBreaker opened() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 0.5, OPEN_MS, now::get);
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+}